@@ -1,7 +1,47 @@
 // FILE:  OrganizedTree.java
 
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.stream.StreamSupport;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
 
 /**
  *  This program can take an integer as an argument, makes
@@ -10,8 +50,9 @@ import java.util.List;
  *  trees that can be made with that array.
  *
  *  Integers greater than 8 not fully evaluated for correctness.
- *  Integers 20 and greater will cause an integer overflow
- *  Integers 16 and greater will likely cause an "out of memory" error.
+ *  Integers 36 and greater will cause an integer overflow
+ *  The trees are generated one at a time, so large integers
+ *  take a long time but do not run out of memory.
  *
  *  This program can also take a number of strings as an
  *  argument, and output the sorted binary tree the array
@@ -132,26 +173,29 @@ public class OrganizedTree
         **/
         public void addLink( Type input_data )
         {
-            if( input_data.compareTo( data ) < 0 )
-            {
-                if( left_link == null )
-                {
-                    left_link = new Node<Type>( input_data );
-                }
-                else
-                {
-                    left_link.addLink( input_data );
-                }
-            }
-            else
-            {
-                if( right_link == null )
+            Node<Type> parent = this;
+
+            while( true )
+            { // walks down instead of recursing, so deep trees do not overflow the stack
+                if( input_data.compareTo( parent.data ) < 0 )
                 {
-                    right_link = new Node<Type>( input_data );
+                    if( parent.left_link == null )
+                    {
+                        parent.left_link = new Node<Type>( input_data );
+                        return;
+                    }
+
+                    parent = parent.left_link;
                 }
                 else
                 {
-                    right_link.addLink( input_data );
+                    if( parent.right_link == null )
+                    {
+                        parent.right_link = new Node<Type>( input_data );
+                        return;
+                    }
+
+                    parent = parent.right_link;
                 }
             }
         }
@@ -161,6 +205,8 @@ public class OrganizedTree
         * Changes the offset in this node and all of
         *   the desendents of this node in relation to
         *   left justified printing.
+        *   The nodes are numbered a level at a time and
+        *   laid out by a ContourLayout.
         * @param - none.
         * @return - none.
         * @post - all of the offsets in this node
@@ -168,227 +214,44 @@ public class OrganizedTree
         **/
         public void configureOffset()
         {
-            setOffset(0);
-            int furthest_left = find_least_offset();
-
-            if( furthest_left < 1 )
-            {
-                changeOffset( 1 - furthest_left );
-            }
-        }
-                 
-   
-        /**
-        * This method searches all nodes from this root
-        *   and returns the least (likely negative) offset.
-        * @param - none.
-        * @return - int.
-        * @post - class values are unchanged.
-        **/
-        private int find_least_offset()
-        {
-            int return_offset;
-
-            if( left_link == null )
-            {
-                return_offset = offset;
-            }
-            else
-            {
-                return_offset = left_link.find_least_offset();
-            }
-
-            if( right_link != null )
-            {
-                int right_least= right_link.find_least_offset();
-
-                if( return_offset > right_least )
-                {
-                    return_offset = right_least;
-                }
-            }
-
-            return return_offset;
-        }
-
-        private void setOffset( int inherited_offset )
-        {
-            if( left_link == null )
-            {
-                offset = inherited_offset;
-            }
-            else
-            {
-                left_link.setOffset( inherited_offset - 1 );
-                offset = 1 + left_link.getOffset();
-            }
-
-            if( right_link != null )
-            {
-                right_link.setOffset( offset + 1 );
-
-                int spacer = 1;
-
-                if( left_link != null )
-                {
-                    int new_spacer = 1;
-
-                    while( new_spacer > 0 )
-                    { // checks check_decendent_collision() multiple times
-                        new_spacer = check_decendent_collision();
-
-                        //System.out.printf( "DEBUG: new_spacer: %d, value: %d\n", new_spacer, data );
-                        /*if( spacer > 10 )
-                        {
-                            System.exit(1);
-                        }*/ // debug infinite loop catch
-
-                        if( new_spacer > 0 )
-                        { // separates nodes that are too close or over lap
-                            left_link.changeOffset( -1 * new_spacer );
-                            right_link.changeOffset( new_spacer );
-                        }
-
-                        spacer += new_spacer;
-                    }
-                }
-                
-                if( offset < right_link.getOffset() - spacer )
-                {
-                    //System.out.printf( "DEBUG: spacer: %d, value: %d, old offset: %d, calc: %d\n", 
-                        //spacer, data, offset, right_link.getOffset() - offset - 2 * spacer + 1  );
-                    if( left_link != null )
-                    { /* the offset from the right link might be greater
-                      than the offset from the left, calling the function
-                      for the left again to fix it*/
-                        //                       new-offset - old-offset
-
-                        left_link.changeOffset( right_link.getOffset() - offset - spacer );
-                    }
-
-                    offset = right_link.getOffset() - spacer;
-                }
-            }
-        }
-
-        private int check_decendent_collision()
-        {
-            for( int test_depth = depth(); test_depth > 1; --test_depth )
-            {
-                // the nodes compared must be in the same depth
-
-                //System.out.printf( "DEBUG: test_depth: %d\n", test_depth );
-                Node<Type> left_node = left_link.find_furthest_right( test_depth );
-                Node<Type> right_node = right_link.find_furthest_left( test_depth );
-
-                if( left_node != null && right_node != null && left_node.getOffset() > right_node.getOffset() - 2 )
-                {
-                    //System.out.printf( "DEBUG: left_offset: %d\n", left_node.getOffset() );
-                    //System.out.printf( "DEBUG: right_offset: %d\n\n", right_node.getOffset() );
-                    return 1 + ( left_node.getOffset() - right_node.getOffset() ) / 2;
-                }
-            }
+            List<Node<Type>> nodes = new ArrayList<Node<Type>>();
+            nodes.add( this );
 
-            return 0;
-        }
+            int[] left_index = new int[ 16 ];
+            int[] right_index = new int[ 16 ];
 
-        private Node<Type> find_furthest_left( int input_depth )
-        {
-            if( input_depth > 2 )
+            for( int index = 0; index < nodes.size(); ++index )
             {
-                Node<Type> return_node = null;
-
-                if( left_link != null )
-                {
-                    return_node = left_link.find_furthest_left( input_depth - 1 );
-                }
+                Node<Type> current_node = nodes.get( index );
 
-                if( return_node == null && right_link != null )
-                {
-                    return right_link.find_furthest_left( input_depth - 1 );
-                }
-
-                return return_node;
-            }
-            else
-            {
-                if( left_link == null )
-                {
-                    return right_link;
-                }
-                else
+                if( left_index.length <= index )
                 {
-                    return left_link;
+                    left_index = Arrays.copyOf( left_index, 2 * left_index.length );
+                    right_index = Arrays.copyOf( right_index, 2 * right_index.length );
                 }
-            }
-        }
 
-        private Node<Type> find_furthest_right( int input_depth )
-        {
-            if( input_depth > 2 )
-            {
-                Node<Type> return_node = null;
+                left_index[ index ] = current_node.left_link == null ? -1 : nodes.size();
 
-                if( right_link != null )
+                if( current_node.left_link != null )
                 {
-                    return_node = right_link.find_furthest_right( input_depth - 1 );
+                    nodes.add( current_node.left_link );
                 }
 
-                if( return_node == null && left_link != null )
-                {
-                    return left_link.find_furthest_right( input_depth - 1 );
-                }
+                right_index[ index ] = current_node.right_link == null ? -1 : nodes.size();
 
-                return return_node;
-            }
-            else
-            {
-                if( right_link == null )
-                {
-                    return left_link;
-                }
-                else
+                if( current_node.right_link != null )
                 {
-                    return right_link;
+                    nodes.add( current_node.right_link );
                 }
             }
-        }
-
-        private void changeOffset( int input_change )
-        {
-            offset += input_change;
-
-            if( left_link != null )
-            {
-                left_link.changeOffset( input_change );
-            }
 
-            if( right_link != null )
-            {
-                right_link.changeOffset( input_change );
-            }
-        }
-
-        private int depth()
-        {
-            int return_depth = 1;
-
-            if( left_link != null )
-            {
-                return_depth += left_link.depth();
-            }
+            int[] offsets = new int[ nodes.size() ];
+            new ContourLayout( nodes.size() ).layout( 0, nodes.size(), left_index, right_index, offsets );
 
-            if( right_link != null )
+            for( int index = 0; index < nodes.size(); ++index )
             {
-                int right_return = 1 + right_link.depth();
-
-                if( return_depth < right_return )
-                {
-                    return right_return;
-                }
+                nodes.get( index ).offset = offsets[ index ];
             }
-
-            return return_depth;
         }
 
 
@@ -402,16 +265,23 @@ public class OrganizedTree
          **/
         public void print()
         {
-            System.out.println( toString() );
+            List<Node<Type>> stack = new ArrayList<Node<Type>>();
+            stack.add( this );
 
-            if( left_link != null )
+            while( !stack.isEmpty() )
             {
-                left_link.print();
-            }
+                Node<Type> current_node = stack.remove( stack.size() - 1 );
+                System.out.println( current_node.toString() );
 
-            if( right_link != null )
-            {
-                right_link.print();
+                if( current_node.right_link != null )
+                {
+                    stack.add( current_node.right_link );
+                }
+
+                if( current_node.left_link != null )
+                {
+                    stack.add( current_node.left_link );
+                }
             }
         }
 
@@ -448,11 +318,23 @@ public class OrganizedTree
     /**
     * A class that holds a binary search tree on integer nodes.
     *  Primary use is for prints the tree in a ascii fashion.
+    *  The nodes are also numbered in the order they were added and
+    *  their links kept in int arrays, so the tree can keep its layout
+    *  and only lay out the path of a new node when one is inserted.
     */
     static class Tree<Type extends Comparable<Type>>
     {
+        private static final int NONE = -1;
+
         private Node<Type> root;
         private int longest_width;
+        private List<Node<Type>> nodes;
+        private LabelDictionary<Type> dictionary;
+        private int[] label_ids, left_index, right_index, offsets, path;
+        private char[][] cells; // the cell of each node, filled when the tree is drawn
+        private ContourLayout layout;
+        private TreeCanvas canvas;
+        private boolean offsets_current;
 
 
         /**
@@ -466,12 +348,25 @@ public class OrganizedTree
         {
             root = null;
             longest_width = 0;
+            nodes = new ArrayList<Node<Type>>();
+            dictionary = new LabelDictionary<Type>();
+            label_ids = new int[ 16 ];
+            cells = new char[0][];
+            left_index = new int[ 16 ];
+            right_index = new int[ 16 ];
+            offsets = new int[ 16 ];
+            path = new int[ 16 ];
+            layout = null;
+            canvas = null;
+            offsets_current = true;
         }
 
 
         /**
          * Constructs a tree using the 
          *   specified preexisting array.
+         *   The tree is the same as inserting the array in order, but it
+         *   is built in O(n log n) time whatever its depth, see bulk_build().
          * @param - int array.
          * @post -
          *   a tree constructed from the supplied array.
@@ -480,169 +375,469 @@ public class OrganizedTree
          **/
         public Tree( Type[] input_array )
         {
-            root = new Node<Type>( input_array[0] );
-            longest_width = 0;
+            this();
+            build( input_array, input_array.length );
+        }
+
+
+        /**
+         * Constructs a tree of keys already interned into input_dictionary,
+         *   as if the key of each of the first node_count ids of input_ids
+         *   were inserted in order, so a tree of keys read from a file is
+         *   built without an array of the keys. The tree keeps and uses
+         *   input_dictionary and input_ids.
+         * @param - LabelDictionary<Type>, int array, int.
+         * @post -
+         *   a tree constructed from the supplied ids.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory for the tree.
+         **/
+        public Tree( LabelDictionary<Type> input_dictionary, int[] input_ids, int node_count )
+        {
+            this();
+            dictionary = input_dictionary;
+            label_ids = input_ids.length < label_ids.length ? Arrays.copyOf( input_ids, label_ids.length ) : input_ids;
+            build( null, node_count );
+        }
+
+
+        /**
+         * Builds the tree of node_count nodes, from input_array or, when it
+         *   is null, from the ids already in label_ids, and lays it out.
+         * @param - Type array, int.
+         * @return - none.
+         * @post - the tree holds a node for each element, with offsets.
+         **/
+        private void build( Type[] input_array, int node_count )
+        {
+            Stats.BuildEvent event = Stats.events ? new Stats.BuildEvent() : null;
+            long start = Stats.enabled ? System.nanoTime() : 0;
 
-            for( int index = 1; index < input_array.length; ++index )
+            if( event != null )
             {
-                root.addLink( input_array[index] );
+                event.begin();
+            }
+
+            bulk_build( input_array, node_count );
 
-                if( longest_width < input_array[index].toString().length() )
+            for( int index = 1; index < node_count; ++index )
+            {
+                if( longest_width < dictionary.label( label_ids[index] ).length() )
                 {
-                    longest_width = input_array[index].toString().length();
+                    longest_width = dictionary.label( label_ids[index] ).length();
                 }
             }
+
+            if( Stats.enabled )
+            {
+                Stats.lap( Stats.BUILD, start );
+            }
+
+            if( event != null )
+            {
+                event.nodes = node_count;
+                event.commit();
+            }
             
             // offset CAN_NOT be determined during node creation
-            root.configureOffset();
+            layout = new ContourLayout( nodes.size() );
+
+            if( root != null )
+            {
+                layout.layout( 0, nodes.size(), left_index, right_index, offsets );
+                copy_offsets();
+            }
         }
 
-        private void depth_data( Node<Type> local_root, int input_depth, List<List<Node<Type>>> value_list )
+
+        /**
+         * Inserts input_data into the tree. Only the nodes on the path
+         *   from the root to the new node are laid out again, the offsets
+         *   are summed from the layout the next time the tree is rendered.
+         *   Like the array constructor, the width of the first element
+         *   is not counted in the longest width.
+         * @param - Type.
+         * @return - none.
+         * @post - the tree holds a new node with input_data.
+         **/
+        public void insert( Type input_data )
         {
-            if( local_root != null )
-            {
-                if( value_list.size() <= input_depth )
-                {
-                    value_list.add( new ArrayList<Node<Type>>() );
-                }
+            int path_length = add_node( input_data );
 
-                value_list.get( input_depth ).add( local_root );
+            if( nodes.size() > 1 && longest_width < dictionary.label( label_ids[ nodes.size() - 1 ] ).length() )
+            {
+                longest_width = dictionary.label( label_ids[ nodes.size() - 1 ] ).length();
+            }
 
-                depth_data( local_root.getLeftLink(), input_depth + 1, value_list );
-                depth_data( local_root.getRightLink(), input_depth + 1, value_list );
+            if( layout == null )
+            {
+                layout = new ContourLayout( left_index.length );
             }
+
+            layout.update( path, path_length, nodes.size(), left_index, right_index );
+            offsets_current = false;
         }
 
 
         /**
-         * This method renders the tree's contents into an ascii graphic form.
+         * Returns the root node of the tree, null when it is empty.
          * @param - none.
-         * @return - String.
-         * @post - The tree is not altered by this method.
+         * @return - Node<Type>.
+         * @post - class values are unchanged.
          **/
-        public String toString()
+        public Node<Type> getRoot()
         {
-            return toString( false );
+            return root;
         }
 
 
         /**
-         * This method renders the tree's contents into an ascii graphic form.
-         *   The graphical link can be set to be wider
-         * @param - int.
-         * @return - String.
-         * @post - The tree is not altered by this method.
+         * Returns the number of nodes in the tree.
+         * @param - none.
+         * @return - int.
+         * @post - class values are unchanged.
          **/
-        public String toString( boolean wide_link )
+        public int size()
         {
-            StringBuffer sb = new StringBuffer();
-
-            List<List<Node<Type>>> depth_array = new ArrayList<List<Node<Type>>>();
-            depth_data( root, 0, depth_array );
-
-            for(List<Node<Type>> step_array: depth_array )
-            {
-                int previus_offset = 0;
+            return nodes.size();
+        }
 
-                for( Node<Type> current_node: step_array )
-                {
-                    if( current_node.getOffset() - previus_offset > 1 )
-                    {
-                        sb.append( String.format( "%" + ( ( 2 + longest_width ) * 
-                            ( current_node.getOffset() - previus_offset - 1) ) + "s", "" ) );
-                    }
 
-                    sb.append("(");
+        /**
+         * Builds the tree that inserting input_array in order would build,
+         *   without walking down the tree for each element. A key goes
+         *   right of an equal key inserted before it, so the tree's in
+         *   order sequence is the array stably sorted. Each node's parent
+         *   was inserted before it, so the tree is the Cartesian tree of
+         *   the sorted sequence on the insertion index: walking the sorted
+         *   sequence, a node takes as its left child the nodes on the
+         *   stack inserted after it, and becomes the right child of the
+         *   node left on top of the stack.
+         *   Only the distinct keys are compared, by the dictionary, which
+         *   is O(d log d) for d distinct keys. The nodes are then put in
+         *   order by a counting sort on the ranks of their keys, which is
+         *   stable and O(n). When input_array is null the keys are
+         *   already interned, and label_ids holds their ids.
+         * @param - Type array, int.
+         * @return - none.
+         * @post - the tree holds a node for each element, without offsets.
+         **/
+        private void bulk_build( Type[] input_array, int node_count )
+        {
+            int[] sorted = new int[ node_count ];
 
-                    int spacing_difference = longest_width - current_node.getData().toString().length();
+            if( input_array != null )
+            {
+                dictionary.reserve( node_count );
+            }
 
-                    sb.append( String.format( "%" + ( longest_width - spacing_difference / 2 ) + "s",
-                        current_node.getData().toString() ) );
+            if( left_index.length < node_count )
+            {
+                label_ids = input_array != null ? new int[ node_count ] : label_ids;
+                left_index = new int[ node_count ];
+                right_index = new int[ node_count ];
+                offsets = new int[ node_count ];
+                path = new int[ node_count ];
+            }
 
-                    if( spacing_difference > 1 )
-                    {
-                        sb.append( String.format( "%" + ( spacing_difference / 2 )+ "s", "" ) );
-                    }
+            for( int node = 0; node < node_count; ++node )
+            {
+                if( input_array != null )
+                {
+                    label_ids[ node ] = dictionary.intern( input_array[ node ] );
+                }
 
-                    sb.append(")");
+                nodes.add( new Node<Type>( input_array != null ? input_array[ node ] : dictionary.key( label_ids[ node ] ) ) );
+                left_index[ node ] = NONE;
+                right_index[ node ] = NONE;
+            }
 
-                    previus_offset = current_node.getOffset();
-                }
+            int[] ranks = dictionary.ranks();
+            int[] rank_start = new int[ dictionary.size() + 1 ];
 
-                if( step_array != depth_array.get( depth_array.size() - 1 ) )
-                { // if the step_array isnt the last list in depth_array    print the links
-                    previus_offset = 0;
-                    sb.append( "\n" );
+            for( int node = 0; node < node_count; ++node )
+            {
+                ++rank_start[ ranks[ label_ids[ node ] ] + 1 ];
+            }
 
-                    if( wide_link )
-                    {
-                        sb.append( " " );
-                    }
+            for( int rank = 1; rank < rank_start.length; ++rank )
+            {
+                rank_start[ rank ] += rank_start[ rank - 1 ];
+            }
 
-                    for( Node<Type> current_node: step_array )
-                    {
-                        StringBuffer link_sb = new StringBuffer();
+            for( int node = 0; node < node_count; ++node )
+            {
+                sorted[ rank_start[ ranks[ label_ids[ node ] ] ]++ ] = node;
+            }
 
-                        if( current_node.getLeftLink() == null )
-                        {
-                            if( wide_link )
-                            {
-                                if( current_node.getOffset() != 1 )
-                                {
-                                    link_sb.append( "  " );
-                                }
-                            }
-                            else
-                            {
-                                link_sb.append( " " );
-                            }
-                        }
-                        else
-                        {
-                            link_sb.append( "/" );
+            int[] stack = path; // the path is not in use while building
+            int stack_size = 0;
 
-                            if( wide_link )
-                            {
-                                link_sb.append( "/" );
-                            }
-                        }
+            for( int node: sorted )
+            {
+                int last_popped = NONE;
 
-                        link_sb.append( String.format( "%" + longest_width + "s", "" ) );
+                while( stack_size > 0 && stack[ stack_size - 1 ] > node )
+                {
+                    last_popped = stack[ --stack_size ];
+                }
 
-                        if( current_node.getRightLink() == null )
-                        {
-                            link_sb.append( " " );
+                left_index[ node ] = last_popped;
 
-                            if( wide_link )
-                            {
-                                link_sb.append( " " );
-                            }
-                        }
-                        else
-                        {
-                            link_sb.append( "\\" );
+                if( stack_size > 0 )
+                {
+                    right_index[ stack[ stack_size - 1 ] ] = node;
+                }
 
-                            if( wide_link )
-                            {
-                                link_sb.append( "\\" );
-                            }
-                        }
+                stack[ stack_size++ ] = node;
+            }
 
-                        sb.append( String.format( "%" + ( ( 2 + longest_width ) * ( current_node.getOffset() - previus_offset ) ) + "s",
-                            link_sb.toString() ) );
-                        previus_offset = current_node.getOffset();
-                    }
+            for( int node = 0; node < node_count; ++node )
+            {
+                Node<Type> tree_node = nodes.get( node );
 
-                    sb.append( "\n" );
-                }
+                tree_node.left_link = left_index[ node ] == NONE ? null : nodes.get( left_index[ node ] );
+                tree_node.right_link = right_index[ node ] == NONE ? null : nodes.get( right_index[ node ] );
             }
 
-            return sb.toString();
+            root = node_count > 0 ? nodes.get( 0 ) : null;
         }
 
 
         /**
-         * This method prints the tree's contents in a generic printed form.
+         * Adds a node for input_data below the node it sorts to, and
+         *   fills path with the nodes from the root to the new node.
+         * @param - Type.
+         * @return - int, the length of the path.
+         * @post - the tree holds a new node, without an offset.
+         **/
+        private int add_node( Type input_data )
+        {
+            int node = nodes.size();
+            int path_length = 0;
+            Node<Type> new_node = new Node<Type>( input_data );
+
+            if( left_index.length <= node )
+            {
+                int capacity = 2 * left_index.length;
+
+                label_ids = Arrays.copyOf( label_ids, capacity );
+                left_index = Arrays.copyOf( left_index, capacity );
+                right_index = Arrays.copyOf( right_index, capacity );
+                offsets = Arrays.copyOf( offsets, capacity );
+                path = Arrays.copyOf( path, capacity );
+            }
+
+            nodes.add( new_node );
+            label_ids[ node ] = dictionary.intern( input_data );
+            left_index[ node ] = NONE;
+            right_index[ node ] = NONE;
+
+            // a key seen before compares by rank while no new key has made the ranks stale
+            int rank = dictionary.rank( label_ids[ node ] );
+
+            if( root == null )
+            {
+                root = new_node;
+            }
+            else
+            {
+                int parent = 0;
+
+                while( true )
+                {
+                    Node<Type> parent_node = nodes.get( parent );
+                    path[ path_length++ ] = parent;
+
+                    if( rank >= 0 ? rank < dictionary.rank( label_ids[ parent ] ) :
+                        input_data.compareTo( parent_node.getData() ) < 0 )
+                    {
+                        if( left_index[ parent ] == NONE )
+                        {
+                            left_index[ parent ] = node;
+                            parent_node.left_link = new_node;
+                            break;
+                        }
+
+                        parent = left_index[ parent ];
+                    }
+                    else
+                    {
+                        if( right_index[ parent ] == NONE )
+                        {
+                            right_index[ parent ] = node;
+                            parent_node.right_link = new_node;
+                            break;
+                        }
+
+                        parent = right_index[ parent ];
+                    }
+                }
+            }
+
+            path[ path_length++ ] = node;
+
+            return path_length;
+        }
+
+
+        /**
+         * Sums the offsets from the layout if a node was inserted
+         *   since they were last summed.
+         * @param - none.
+         * @return - none.
+         * @post - the offset of every node is current.
+         **/
+        private void configure_offsets()
+        {
+            if( !offsets_current )
+            {
+                layout.offsets( 0, left_index, right_index, offsets );
+                copy_offsets();
+            }
+        }
+
+        private void copy_offsets()
+        {
+            for( int index = 0; index < nodes.size(); ++index )
+            {
+                nodes.get( index ).offset = offsets[ index ];
+            }
+
+            offsets_current = true;
+        }
+
+
+        /**
+         * This method renders the tree's contents into an ascii graphic form.
+         * @param - none.
+         * @return - String.
+         * @post - The tree is not altered by this method.
+         **/
+        public String toString()
+        {
+            return toString( false );
+        }
+
+
+        /**
+         * This method renders the tree's contents into an ascii graphic form.
+         *   The graphical link can be set to be wider
+         * @param - int.
+         * @return - String.
+         * @post - The tree is not altered by this method.
+         **/
+        public String toString( boolean wide_link )
+        {
+            return render( wide_link ).toString();
+        }
+
+
+        /**
+         * This method renders the tree's contents into the tree's canvas,
+         *   which is reused by the next render.
+         * @param - boolean.
+         * @return - TreeCanvas.
+         * @post - The tree is not altered by this method.
+         **/
+        public TreeCanvas render( boolean wide_link )
+        {
+            configure_offsets();
+
+            Stats.RenderEvent event = Stats.events ? new Stats.RenderEvent() : null;
+
+            if( event != null )
+            {
+                event.begin();
+            }
+
+            if( canvas == null )
+            {
+                canvas = new TreeCanvas( nodes.size() );
+            }
+
+            canvas.collect_levels( root == null ? NONE : 0, nodes.size(), left_index, right_index );
+            canvas.render( offsets, left_index, right_index, cells(), longest_width, wide_link );
+
+            if( event != null )
+            {
+                event.nodes = nodes.size();
+                event.characters = canvas.length();
+                event.wide_link = wide_link;
+                event.commit();
+            }
+
+            return canvas;
+        }
+
+
+        /**
+         * Returns the cell of each node for the longest width, from
+         *   the dictionary, which pads each distinct label once.
+         * @param - none.
+         * @return - char array array.
+         * @post - the cells are filled.
+         **/
+        private char[][] cells()
+        {
+            if( cells.length < nodes.size() )
+            {
+                cells = new char[ left_index.length ][];
+            }
+
+            for( int node = 0; node < nodes.size(); ++node )
+            {
+                cells[ node ] = dictionary.cell( label_ids[ node ], longest_width );
+            }
+
+            return cells;
+        }
+
+
+        /**
+         * This method writes the tree's contents in the ascii graphic
+         *   form to sink a level at a time, without holding the whole
+         *   picture, or only the window of levels from first_level and
+         *   offsets from first_offset, up to but not including the ends,
+         *   0 for the last. See TreeCanvas.stream().
+         * @param - OutputSink, boolean, int, int, int, int.
+         * @return - none.
+         * @post - The tree is not altered by this method.
+         **/
+        public void write( OutputSink sink, boolean wide_link, int first_level, int end_level, int first_offset,
+            int end_offset )
+        {
+            configure_offsets();
+
+            Stats.RenderEvent event = Stats.events ? new Stats.RenderEvent() : null;
+            long written = sink.bytes_written();
+
+            if( event != null )
+            {
+                event.begin();
+            }
+
+            if( canvas == null )
+            {
+                canvas = new TreeCanvas( nodes.size() );
+            }
+
+            canvas.collect_levels( root == null ? NONE : 0, nodes.size(), left_index, right_index );
+            canvas.stream( offsets, left_index, right_index, cells(), longest_width, wide_link, first_level, end_level,
+                first_offset, end_offset, sink );
+
+            if( event != null )
+            {
+                event.nodes = nodes.size();
+                event.characters = (int) Math.min( Integer.MAX_VALUE, sink.bytes_written() - written );
+                event.wide_link = wide_link;
+                event.commit();
+            }
+        }
+
+
+        /**
+         * This method prints the tree's contents in a generic printed form.
          * This method was designed for debugging purposes.
          * @param - none.
          * @return - none.
@@ -652,163 +847,6564 @@ public class OrganizedTree
         {
             if( root != null )
             {
-                root.print();
+                root.print();
+            }
+            else
+            {
+                System.out.print( "Empty tree" );
+            }
+        }
+    }
+
+    /**
+    * A class that interns the keys of a Tree, so the work on a key's
+    *  text and order is done once for each distinct key rather than for
+    *  each node. Each key gets an id, in the order the keys are first
+    *  seen, and for each id the dictionary keeps the label, toString()
+    *  called once, its cell as the tree draws it, padded and centered for
+    *  the longest width, and its rank among the keys: equal keys, by
+    *  compareTo(), share a rank. Comparing and drawing nodes then works
+    *  on ints and char arrays.
+    *  The ids are found through an open addressing table of ints, so
+    *  interning boxes nothing. The ranks are found by sorting the
+    *  distinct keys, and are only current until the next new key is
+    *  interned.
+    */
+    static class LabelDictionary<Type extends Comparable<Type>>
+    {
+        private int[] table; // the id + 1 of the key hashed to each slot, 0 for an empty slot
+        private final ArrayList<Type> keys;
+        private String[] labels;
+        private int[] ranks;
+        private char[][] cells;
+        private int cell_width; // the longest width the cells are padded for, -1 for none
+        private boolean ranks_current;
+
+
+        /**
+         * Default constructor for an empty dictionary.
+         * @param - none.
+         * @post - an empty dictionary is allocated.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory.
+         **/ 
+        public LabelDictionary()
+        {
+            table = new int[ 32 ];
+            keys = new ArrayList<Type>();
+            labels = new String[ 16 ];
+            ranks = new int[0];
+            cells = new char[ 16 ][];
+            cell_width = -1;
+            ranks_current = true;
+        }
+
+
+        /**
+        * Makes room for key_count keys in all, so interning them does
+        *   not grow the arrays or the table again.
+        * @param - int.
+        * @return - none.
+        * @post - the arrays and the table have room for key_count keys.
+        **/
+        public void reserve( int key_count )
+        {
+            if( labels.length < key_count )
+            {
+                labels = Arrays.copyOf( labels, key_count );
+                cells = Arrays.copyOf( cells, key_count );
+                keys.ensureCapacity( key_count );
+            }
+
+            if( table.length < 2 * key_count )
+            {
+                rehash( Integer.highestOneBit( 2 * key_count - 1 ) << 1 );
+            }
+        }
+
+
+        /**
+        * Returns the id of key, giving it the next id if it is new.
+        * @param - Type.
+        * @return - int.
+        * @post - a new key is kept with its label, the ranks are no
+        *   longer current.
+        **/
+        public int intern( Type key )
+        {
+            int slot = slot( key, table );
+
+            if( table[ slot ] != 0 )
+            {
+                return table[ slot ] - 1;
+            }
+
+            int new_id = keys.size();
+
+            if( labels.length <= new_id )
+            {
+                labels = Arrays.copyOf( labels, 2 * labels.length );
+                cells = Arrays.copyOf( cells, 2 * cells.length );
+            }
+
+            table[ slot ] = new_id + 1;
+            keys.add( key );
+            labels[ new_id ] = key.toString();
+            ranks_current = false;
+
+            if( 2 * keys.size() > table.length )
+            { // the table is kept at most half full
+                rehash( 2 * table.length );
+            }
+
+            return new_id;
+        }
+
+        private void rehash( int table_size )
+        {
+            int[] grown = new int[ table_size ];
+
+            for( int id = 0; id < keys.size(); ++id )
+            {
+                grown[ slot( keys.get( id ), grown ) ] = id + 1;
+            }
+
+            table = grown;
+        }
+
+
+        /**
+        * Returns the slot of key in slots: the slot holding it, or the
+        *   empty slot it would go in.
+        * @param - Type, int array.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        private int slot( Type key, int[] slots )
+        {
+            int hash = key.hashCode() * 0x9E3779B9; // spreads the hash into the high bits
+            int mask = slots.length - 1;
+            int slot = ( hash ^ hash >>> 16 ) & mask;
+
+            while( slots[ slot ] != 0 && !keys.get( slots[ slot ] - 1 ).equals( key ) )
+            {
+                slot = ( slot + 1 ) & mask;
+            }
+
+            return slot;
+        }
+
+
+        /**
+        * Returns the number of distinct keys.
+        * @param - none.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        public int size()
+        {
+            return keys.size();
+        }
+
+
+        /**
+        * Returns the key with id.
+        * @param - int.
+        * @return - Type.
+        * @post - class values are unchanged.
+        **/
+        public Type key( int id )
+        {
+            return keys.get( id );
+        }
+
+
+        /**
+        * Returns the label of the key with id.
+        * @param - int.
+        * @return - String.
+        * @post - class values are unchanged.
+        **/
+        public String label( int id )
+        {
+            return labels[ id ];
+        }
+
+
+        /**
+        * Returns the rank of each id, sorting the keys again if a key
+        *   was interned since they were last sorted.
+        * @param - none.
+        * @return - int array, indexed by id.
+        * @post - the ranks are current.
+        **/
+        public int[] ranks()
+        {
+            if( !ranks_current )
+            {
+                Integer[] sorted = new Integer[ keys.size() ];
+
+                for( int id = 0; id < sorted.length; ++id )
+                {
+                    sorted[ id ] = id;
+                }
+
+                Arrays.sort( sorted, ( first, second ) -> keys.get( first ).compareTo( keys.get( second ) ) );
+
+                ranks = new int[ sorted.length ];
+
+                for( int index = 1; index < sorted.length; ++index )
+                {
+                    boolean tied = keys.get( sorted[ index ] ).compareTo( keys.get( sorted[ index - 1 ] ) ) == 0;
+
+                    ranks[ sorted[ index ] ] = ranks[ sorted[ index - 1 ] ] + ( tied ? 0 : 1 );
+                }
+
+                ranks_current = true;
+            }
+
+            return ranks;
+        }
+
+
+        /**
+        * Returns the rank of the key with id, or -1 when a key was
+        *   interned since the keys were last sorted.
+        * @param - int.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        public int rank( int id )
+        {
+            return ranks_current ? ranks[ id ] : -1;
+        }
+
+
+        /**
+        * Returns the cell of the key with id for labels of longest_width:
+        *   the label in parentheses, centered with the extra space on the
+        *   left, the way TreeCanvas draws it. A label longer than
+        *   longest_width fills its cell without padding.
+        * @param - int, int.
+        * @return - char array.
+        * @post - the cell is kept, the cells of another width are dropped.
+        **/
+        public char[] cell( int id, int longest_width )
+        {
+            if( cell_width != longest_width )
+            {
+                Arrays.fill( cells, null );
+                cell_width = longest_width;
+            }
+
+            if( cells[ id ] == null )
+            {
+                String label = labels[ id ];
+                int spacing_difference = longest_width - label.length();
+                int left_spaces = Math.max( 0, longest_width - spacing_difference / 2 - label.length() );
+                int right_spaces = spacing_difference > 1 ? spacing_difference / 2 : 0;
+                char[] cell = new char[ 2 + left_spaces + label.length() + right_spaces ];
+
+                Arrays.fill( cell, ' ' );
+                cell[0] = '(';
+                label.getChars( 0, label.length(), cell, 1 + left_spaces );
+                cell[ cell.length - 1 ] = ')';
+                cells[ id ] = cell;
+            }
+
+            return cells[ id ];
+        }
+    }
+
+    /**
+    * An iterator over tree sequences that can also copy the next sequence
+    *  into an array the caller keeps, so a loop over millions of trees
+    *  does not allocate an array for each one.
+    */
+    interface SequenceIterator extends Iterator<int[]>
+    {
+        /**
+        * Copies the next sequence into output, which must be as long as
+        *   the sequences, and moves past it.
+        * @param - int array.
+        * @return - int array, output.
+        * @post - the iterator is moved to the next sequence.
+        * @exception NoSuchElementException
+        *   Indicates every sequence has been returned.
+        **/
+        int[] next( int[] output );
+    }
+
+    /**
+    * A class that lazily generates every sequence that builds a distinct
+    *  binary search tree on the values 1 to size, in the same order as
+    *  permutate() does.
+    *  Only the current sequence and the value range of each position
+    *  are held, so the live state is three int arrays of length size.
+    *  The order is the lexicographic order of the preorder sequences:
+    *  root first, then the left sequence, then the right sequence.
+    */
+    static class TreeEnumerator implements SequenceIterator
+    {
+        private int[] sequence, least, greatest;
+        private boolean has_next;
+
+
+        /**
+         * Constructor for an enumerator over the values 1 to input_size.
+         * @param - int.
+         * @post - 
+         *   the enumerator is set to the first sequence, 1 to input_size.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory.
+         **/ 
+        public TreeEnumerator( int input_size )
+        {
+            sequence = new int[ input_size ];
+            least = new int[ input_size ];
+            greatest = new int[ input_size ];
+            has_next = input_size > 0;
+
+            fill_ascending( 0, 1, input_size );
+        }
+
+
+        /**
+         * Constructor for an enumerator over the values 1 to input_size
+         *   that starts at the given tree number (counting from zero).
+         * @param - int, long.
+         * @post - 
+         *   the enumerator is set to the sequence of tree first_number.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory.
+         * @exception IllegalArgumentException
+         *   Indicates first_number is not a tree number of input_size.
+         **/ 
+        public TreeEnumerator( int input_size, long first_number )
+        {
+            this( input_size );
+
+            if( first_number < 0 || first_number > TreeCount.count( input_size ) )
+            {
+                throw new IllegalArgumentException( "tree number " + first_number + " is out of range" );
+            }
+
+            if( first_number == TreeCount.count( input_size ) )
+            {
+                has_next = false;
+            }
+            else if( has_next )
+            {
+                seek( 0, 1, input_size, first_number );
+            }
+        }
+
+
+        /**
+        * Returns whether another sequence is available.
+        * @param - none.
+        * @return - boolean.
+        * @post - class values are unchanged.
+        **/
+        public boolean hasNext()
+        {
+            return has_next;
+        }
+
+
+        /**
+        * Returns a copy of the current sequence and moves to the next one.
+        * @param - none.
+        * @return - int array.
+        * @post - the enumerator is moved to the next sequence.
+        * @exception NoSuchElementException
+        *   Indicates every sequence has been returned.
+        **/
+        public int[] next()
+        {
+            return next( new int[ sequence.length ] );
+        }
+
+        public int[] next( int[] output )
+        {
+            if( !has_next )
+            {
+                throw new NoSuchElementException();
+            }
+
+            System.arraycopy( sequence, 0, output, 0, sequence.length );
+            has_next = advance();
+
+            return output;
+        }
+
+
+        /**
+        * Moves the sequence to its lexicographic successor. The rightmost
+        *   position whose root can still grow is incremented, its subtree
+        *   is reset to the least arrangement, and every later subtree is
+        *   reset to its least arrangement as well.
+        * @param - none.
+        * @return - boolean, false if the sequence was the last one.
+        * @post - the sequence, least and greatest arrays are changed.
+        **/
+        private boolean advance()
+        {
+            int position = sequence.length - 1;
+
+            while( position >= 0 && sequence[ position ] == greatest[ position ] )
+            {
+                --position;
+            }
+
+            if( position < 0 )
+            {
+                return false;
+            }
+
+            int root = ++sequence[ position ];
+            int end = position + 1 + greatest[ position ] - least[ position ];
+
+            // the left values then the right values, each as a right leaning chain
+            fill_ascending( position + 1, least[ position ], root - 1 );
+            fill_ascending( position + 1 + root - least[ position ], root + 1, greatest[ position ] );
+
+            while( end < sequence.length )
+            { // the later subtrees keep their value range but are reset
+                int next_end = end + 1 + greatest[ end ] - least[ end ];
+
+                fill_ascending( end, least[ end ], greatest[ end ] );
+                end = next_end;
+            }
+
+            return true;
+        }
+
+
+        /**
+        * Places the sequence of the tree with the given number among the
+        *   trees of first_value to last_value, starting at position.
+        *   The root is found from the root starts, then the remaining
+        *   number is split into the left number and the right number.
+        * @param - int, int, int, long.
+        * @return - none.
+        * @post - the sequence, least and greatest arrays are changed.
+        **/
+        private void seek( int position, int first_value, int last_value, long number )
+        {
+            int size = last_value - first_value + 1;
+
+            if( size > 0 )
+            {
+                int root_index = 0;
+
+                while( TreeCount.root_start( size, root_index + 1 ) <= number )
+                {
+                    ++root_index;
+                }
+
+                long right_count = TreeCount.count( size - root_index - 1 );
+                number -= TreeCount.root_start( size, root_index );
+
+                sequence[ position ] = first_value + root_index;
+                least[ position ] = first_value;
+                greatest[ position ] = last_value;
+
+                seek( position + 1, first_value, first_value + root_index - 1, number / right_count );
+                seek( position + 1 + root_index, first_value + root_index + 1, last_value, number % right_count );
+            }
+        }
+
+
+        /**
+        * Places the values first_value to last_value in ascending order
+        *   starting at position, which is the right leaning chain of
+        *   those values.
+        * @param - int, int, int.
+        * @return - none.
+        * @post - the sequence, least and greatest arrays are changed.
+        **/
+        private void fill_ascending( int position, int first_value, int last_value )
+        {
+            for( int value = first_value; value <= last_value; ++value, ++position )
+            {
+                sequence[ position ] = value;
+                least[ position ] = value;
+                greatest[ position ] = last_value;
+            }
+        }
+    }
+
+    /**
+    * A class that steps through every binary search tree of the values
+    *  1 to size by changing one tree in place, one rotation per tree.
+    *  Tree order here is a Gray code rather than the order of permutate():
+    *  the first tree is the left chain from size down to 1, the last
+    *  tree of permutate(). Removing the greatest value v from a tree of
+    *  1 to v leaves a tree of 1 to v - 1, and v is on the right spine of
+    *  it. v is either the root with the smaller tree as its left subtree,
+    *  or the right child of a spine node with the rest of the spine as
+    *  its left subtree. Moving v one place down or up the spine is one
+    *  rotation. So the largest value sweeps down the spine and back up,
+    *  and each time it reaches an end the next smaller value that can
+    *  still move makes one step, in the way of a reflected Gray code.
+    *  That value is found with focus pointers, as in Knuth's loopless
+    *  reflected mixed-radix Gray code, so no step loops over the values.
+    *  The layout is kept and only the nodes from the root down to the
+    *  rotation are placed again.
+    *  The nodes are the values less one, a missing link is -1.
+    */
+    static class RotationEnumerator
+    {
+        private static final int NONE = -1;
+
+        private final int size;
+        private final int[] left_link, right_link, parent, offset, path;
+        private final boolean[] moving_down; // for each digit, the value size - digit
+        private final int[] focus;
+        private final String[] labels;
+        private final ContourLayout layout;
+        private final TreeCanvas canvas;
+        private int root;
+        private boolean has_next;
+
+
+        /**
+         * Constructor for an enumerator of the trees of the values
+         *   1 to input_size, set to the first tree, the left chain.
+         * @param - int.
+         * @post - 
+         *   the first tree is built and laid out.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory.
+         **/ 
+        public RotationEnumerator( int input_size )
+        {
+            size = input_size;
+            left_link = new int[ size ];
+            right_link = new int[ size ];
+            parent = new int[ size ];
+            offset = new int[ size ];
+            path = new int[ size ];
+            moving_down = new boolean[ Math.max( 0, size - 1 ) ];
+            focus = new int[ size ];
+            labels = new String[ size ];
+            layout = new ContourLayout( size );
+            canvas = new TreeCanvas( size );
+            root = size - 1;
+            has_next = size > 0;
+
+            for( int node = 0; node < size; ++node )
+            {
+                left_link[ node ] = node - 1;
+                right_link[ node ] = NONE;
+                parent[ node ] = node + 1 < size ? node + 1 : NONE;
+                labels[ node ] = Integer.toString( node + 1 );
+                focus[ node ] = node;
+            }
+
+            Arrays.fill( moving_down, true );
+
+            if( size > 0 )
+            {
+                layout.layout( root, size, left_link, right_link, offset );
+            }
+        }
+
+
+        /**
+        * Returns the number of nodes in the trees.
+        * @param - none.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        public int size()
+        {
+            return size;
+        }
+
+
+        /**
+        * Returns whether the enumerator holds a tree, which is false
+        *   once advance() has passed the last one.
+        * @param - none.
+        * @return - boolean.
+        * @post - class values are unchanged.
+        **/
+        public boolean hasNext()
+        {
+            return has_next;
+        }
+
+
+        /**
+        * Moves to the next tree with one rotation and places the nodes
+        *   above it again. The digit that moves is the one focus[0]
+        *   points to; a digit that reaches the end of its spine turns
+        *   around and hands the focus on to the next digit.
+        * @param - none.
+        * @return - boolean, false if the tree was the last one.
+        * @post - the tree is changed by one rotation.
+        **/
+        public boolean advance()
+        {
+            if( size < 2 || focus[0] == size - 1 )
+            { // every digit is at an end
+                has_next = false;
+                return false;
+            }
+
+            int digit = focus[0];
+            int node = size - 1 - digit;
+            int lower;
+
+            focus[0] = 0;
+
+            if( moving_down[ digit ] )
+            {
+                lower = node;
+                rotate_right( node );
+            }
+            else
+            {
+                lower = parent[ node ];
+                rotate_left( lower );
+            }
+
+            if( moving_down[ digit ] ? left_link[ node ] == NONE : parent[ node ] == NONE || parent[ node ] > node )
+            { // an end of the spine, the digit turns around
+                moving_down[ digit ] = !moving_down[ digit ];
+                focus[ digit ] = focus[ digit + 1 ];
+                focus[ digit + 1 ] = digit + 1;
+            }
+
+            int path_length = 0;
+
+            for( int ancestor = lower; ancestor != NONE; ancestor = parent[ ancestor ] )
+            {
+                path[ path_length++ ] = ancestor;
+            }
+
+            for( int index = 0; index < path_length / 2; ++index )
+            { // the path goes down from the root
+                int swap = path[ index ];
+
+                path[ index ] = path[ path_length - 1 - index ];
+                path[ path_length - 1 - index ] = swap;
+            }
+
+            layout.rotate( path, path_length, left_link, right_link );
+
+            return true;
+        }
+
+
+        /**
+        * Writes the preorder of the tree, which is the sequence
+        *   permutate() gives for it, into sequence.
+        * @param - int array.
+        * @return - int array, sequence.
+        * @post - the sequence is overwritten.
+        **/
+        public int[] sequence( int[] sequence )
+        {
+            int count = 0;
+            int top = 0;
+
+            if( size > 0 )
+            { // path is free between advances
+                path[ top++ ] = root;
+            }
+
+            while( top > 0 )
+            {
+                int node = path[ --top ];
+                sequence[ count++ ] = node + 1;
+
+                if( right_link[ node ] != NONE )
+                {
+                    path[ top++ ] = right_link[ node ];
+                }
+
+                if( left_link[ node ] != NONE )
+                {
+                    path[ top++ ] = left_link[ node ];
+                }
+            }
+
+            return sequence;
+        }
+
+
+        /**
+        * Renders the tree into the enumerator's canvas, the same as
+        *   a Tree of its sequence renders. Like Tree, the width of the
+        *   root, the first element, is not counted in the longest width.
+        * @param - boolean.
+        * @return - TreeCanvas.
+        * @post - the offsets are set from the layout.
+        **/
+        public TreeCanvas render( boolean wide_link )
+        {
+            int longest_width = size < 2 ? 0 : labels[ root == size - 1 ? size - 2 : size - 1 ].length();
+
+            layout.offsets( root, left_link, right_link, offset );
+            canvas.collect_levels( size > 0 ? root : NONE, size, left_link, right_link );
+            canvas.render( offset, left_link, right_link, labels, longest_width, wide_link );
+
+            return canvas;
+        }
+
+
+        /**
+        * Rotates the left child of node up into its place.
+        * @param - int.
+        * @return - none.
+        * @post - node is the right child of its left child.
+        **/
+        private void rotate_right( int node )
+        {
+            int child = left_link[ node ];
+
+            left_link[ node ] = right_link[ child ];
+
+            if( right_link[ child ] != NONE )
+            {
+                parent[ right_link[ child ] ] = node;
+            }
+
+            right_link[ child ] = node;
+            replace( node, child );
+        }
+
+
+        /**
+        * Rotates the right child of node up into its place.
+        * @param - int.
+        * @return - none.
+        * @post - node is the left child of its right child.
+        **/
+        private void rotate_left( int node )
+        {
+            int child = right_link[ node ];
+
+            right_link[ node ] = left_link[ child ];
+
+            if( left_link[ child ] != NONE )
+            {
+                parent[ left_link[ child ] ] = node;
+            }
+
+            left_link[ child ] = node;
+            replace( node, child );
+        }
+
+
+        /**
+        * Puts child in the place of node, which becomes its child.
+        * @param - int, int.
+        * @return - none.
+        * @post - the parent of node links to child.
+        **/
+        private void replace( int node, int child )
+        {
+            int grandparent = parent[ node ];
+
+            parent[ child ] = grandparent;
+            parent[ node ] = child;
+
+            if( grandparent == NONE )
+            {
+                root = child;
+            }
+            else if( left_link[ grandparent ] == node )
+            {
+                left_link[ grandparent ] = child;
+            }
+            else
+            {
+                right_link[ grandparent ] = child;
+            }
+        }
+    }
+
+    /**
+    * A class that counts the binary search trees of a given size
+    *  (the Catalan numbers) from precomputed tables.
+    *  Counts up to LONG_LIMIT are held as longs, along with the number
+    *  of trees that start with each root and the tree number at which
+    *  each root starts. Larger counts are held as BigIntegers that are
+    *  calculated once when first needed.
+    */
+    static class TreeCount
+    {
+        /** the largest size whose tree count fits in a long */
+        public static final int LONG_LIMIT = 35;
+
+        private static final long[] counts = new long[ LONG_LIMIT + 1 ];
+        private static final long[][] root_starts = new long[ LONG_LIMIT + 1 ][];
+        private static final List<BigInteger> big_counts = new ArrayList<BigInteger>();
+
+        static
+        {
+            counts[0] = 1;
+
+            for( int size = 1; size <= LONG_LIMIT; ++size )
+            {
+                root_starts[ size ] = new long[ size + 1 ];
+
+                for( int root_index = 0; root_index < size; ++root_index )
+                {
+                    root_starts[ size ][ root_index + 1 ] = root_starts[ size ][ root_index ] +
+                        counts[ root_index ] * counts[ size - root_index - 1 ];
+                }
+
+                counts[ size ] = root_starts[ size ][ size ];
+            }
+
+            root_starts[0] = new long[] {0};
+
+            for( long count: counts )
+            {
+                big_counts.add( BigInteger.valueOf( count ) );
+            }
+        }
+
+
+        /**
+        * Returns whether the tree count of input_size fits in a long.
+        * @param - int.
+        * @return - boolean.
+        * @post - class values are unchanged.
+        **/
+        public static boolean fits_long( int input_size )
+        {
+            return input_size <= LONG_LIMIT;
+        }
+
+
+        /**
+        * Returns the number of binary search trees of input_size nodes.
+        * @param - int.
+        * @return - long.
+        * @post - class values are unchanged.
+        * @exception ArithmeticException
+        *   Indicates the count does not fit in a long.
+        **/
+        public static long count( int input_size )
+        {
+            if( input_size < 0 )
+            {
+                return 1;
+            }
+
+            if( input_size > LONG_LIMIT )
+            {
+                throw new ArithmeticException( "tree count of " + input_size + " overflows a long" );
+            }
+
+            return counts[ input_size ];
+        }
+
+
+        /**
+        * Returns the number of binary search trees of input_size nodes,
+        *   for any size.
+        * @param - int.
+        * @return - BigInteger.
+        * @post - the counts up to input_size are calculated and kept.
+        **/
+        public static BigInteger big_count( int input_size )
+        {
+            if( input_size < 0 )
+            {
+                return BigInteger.ONE;
+            }
+
+            synchronized( big_counts )
+            {
+                while( big_counts.size() <= input_size )
+                { // c(n+1) == c(n) * 2(2n+1) / (n+2)
+                    int size = big_counts.size() - 1;
+
+                    big_counts.add( big_counts.get( size ).multiply( BigInteger.valueOf( 4L * size + 2 ) )
+                        .divide( BigInteger.valueOf( size + 2 ) ) );
+                }
+
+                return big_counts.get( input_size );
+            }
+        }
+
+
+        /**
+        * Returns the number of binary search trees of input_size nodes
+        *   whose root is the value at root_index (counting from zero),
+        *   which is count(root_index) * count(input_size - root_index - 1).
+        * @param - int, int.
+        * @return - long.
+        * @post - class values are unchanged.
+        * @exception ArithmeticException
+        *   Indicates the count does not fit in a long.
+        **/
+        public static long root_count( int input_size, int root_index )
+        {
+            return count( root_index ) * count( input_size - root_index - 1 );
+        }
+
+
+        /**
+        * Returns the number of binary search trees of input_size nodes
+        *   whose root is the value at root_index, for any size.
+        * @param - int, int.
+        * @return - BigInteger.
+        * @post - the counts up to input_size are calculated and kept.
+        **/
+        public static BigInteger big_root_count( int input_size, int root_index )
+        {
+            return big_count( root_index ).multiply( big_count( input_size - root_index - 1 ) );
+        }
+
+
+        /**
+        * Returns how many trees of input_size nodes come before the
+        *   first tree whose root is the value at root_index, in the
+        *   order permutate() produces them.
+        * @param - int, int.
+        * @return - long.
+        * @post - class values are unchanged.
+        * @exception ArithmeticException
+        *   Indicates the count does not fit in a long.
+        **/
+        public static long root_start( int input_size, int root_index )
+        {
+            count( input_size );
+
+            return root_starts[ input_size ][ root_index ];
+        }
+    }
+
+    /**
+    * A class that counts, numbers and generates the binary search trees
+    *  of the values 1 to size that pass a filter: a greatest height, in
+    *  levels so a single node has height 1, AVL balance, where the heights
+    *  of the two subtrees of every node differ by at most one, and a root
+    *  value. 0 and false leave a part of the filter out.
+    *  The trees that pass keep the order of permutate() and are numbered
+    *  from 0 among themselves, so a run of them can be found, printed or
+    *  split into shards without looking at the trees that do not pass.
+    *
+    *  counts[ s ][ h ] is the number of trees of s nodes and height h,
+    *  AVL balanced ones only when the filter asks for balance. A tree is
+    *  then found from its number the way TreeEnumerator.seek() finds it,
+    *  the root first, then the left and the right subtree. Only the whole
+    *  tree has its height limited and the two subtrees of a node depend on
+    *  each other's height, so each subtree is numbered with a weight for
+    *  each of its heights: the number of ways the trees around it can be
+    *  completed when it has that height. The root of the whole tree weighs
+    *  1 for each height that passes and 0 for the others. The number of a
+    *  left subtree L then counts, for every left subtree before it, the
+    *  right subtrees that fit it, and no tree that fails is ever built.
+    */
+    static class TreeFilter
+    {
+        private final int size, max_height, root;
+        private final boolean avl;
+        private final long[][] counts;
+        private final int[] least_height, greatest_height; // the heights with a count for each size
+        private final int height_limit; // the most levels of the whole tree
+        private final long[] top_weight;
+        private final long total;
+
+
+        /**
+         * Constructor for the filter of the trees of input_size of at most
+         *   input_max_height levels, AVL balanced if input_avl and with the
+         *   root input_root, 0 leaving out the height or the root.
+         * @param - int, int, boolean, int.
+         * @post - 
+         *   the counts of the trees that pass are calculated.
+         * @exception IllegalArgumentException
+         *   Indicates the tree count of input_size does not fit in a long.
+         **/ 
+        public TreeFilter( int input_size, int input_max_height, boolean input_avl, int input_root )
+        {
+            if( input_size < 0 || !TreeCount.fits_long( input_size ) )
+            {
+                throw new IllegalArgumentException( "the trees of " + input_size + " can not be numbered" );
+            }
+
+            size = input_size;
+            max_height = input_max_height;
+            avl = input_avl;
+            root = input_root;
+            counts = new long[ size + 1 ][];
+            least_height = new int[ size + 1 ];
+            greatest_height = new int[ size + 1 ];
+            height_limit = max_height == 0 ? size : Math.min( size, max_height );
+            top_weight = new long[ size + 2 ];
+
+            counts[0] = new long[] {1};
+
+            for( int tree_size = 1; tree_size <= size; ++tree_size )
+            {
+                counts[ tree_size ] = new long[ tree_size + 1 ];
+
+                for( int root_index = 0; root_index < tree_size; ++root_index )
+                {
+                    long[] left = counts[ root_index ], right = counts[ tree_size - root_index - 1 ];
+
+                    for( int left_height = 0; left_height < left.length; ++left_height )
+                    {
+                        for( int right_height = 0; right_height < right.length; ++right_height )
+                        {
+                            if( fits( left_height, right_height ) )
+                            {
+                                counts[ tree_size ][ 1 + Math.max( left_height, right_height ) ] +=
+                                    left[ left_height ] * right[ right_height ];
+                            }
+                        }
+                    }
+                }
+
+                least_height[ tree_size ] = tree_size;
+
+                for( int height = tree_size; height > 0; --height )
+                {
+                    if( counts[ tree_size ][ height ] != 0 )
+                    {
+                        least_height[ tree_size ] = height;
+                        greatest_height[ tree_size ] = Math.max( greatest_height[ tree_size ], height );
+                    }
+                }
+            }
+
+            for( int height = 0; height < top_weight.length; ++height )
+            {
+                top_weight[ height ] = max_height == 0 || height <= max_height ? 1 : 0;
+            }
+
+            long passed = 0;
+
+            for( int root_index = 0; root_index < size; ++root_index )
+            {
+                if( root == 0 || root_index == root - 1 )
+                {
+                    passed += root_count( size, root_index, top_weight, 0 );
+                }
+            }
+
+            total = passed;
+        }
+
+
+        /**
+        * Returns the number of trees that pass the filter.
+        * @param - none.
+        * @return - long.
+        * @post - class values are unchanged.
+        **/
+        public long count()
+        {
+            return total;
+        }
+
+
+        /**
+        * Returns the number of nodes in the trees.
+        * @param - none.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        public int size()
+        {
+            return size;
+        }
+
+
+        /**
+        * Returns whether the tree built by inserting sequence, which
+        *   must be the preorder of a tree of the values 1 to its length,
+        *   passes the filter.
+        * @param - int array.
+        * @return - boolean.
+        * @post - class values are unchanged.
+        **/
+        public boolean matches( int[] sequence )
+        {
+            int height = height( sequence, 0, 1, sequence.length );
+
+            return ( root == 0 || ( sequence.length > 0 && sequence[0] == root ) ) && height >= 0 &&
+                ( max_height == 0 || height <= max_height );
+        }
+
+
+        /**
+        * Writes the sequence of the tree numbered rank among the trees
+        *   that pass into sequence.
+        * @param - long, int array.
+        * @return - int array, sequence.
+        * @post - the sequence is overwritten.
+        * @exception IllegalArgumentException
+        *   Indicates rank is not below count().
+        **/
+        public int[] unrank( long rank, int[] sequence )
+        {
+            if( rank < 0 || rank >= total )
+            {
+                throw new IllegalArgumentException( "tree number " + rank + " is out of range" );
+            }
+
+            seek( sequence, 0, 1, size, 0, rank, root - 1, new long[ size + 2 ][ size + 2 ], new long[1] );
+
+            return sequence;
+        }
+
+
+        /**
+        * Returns an iterator over the sequences of the trees that pass,
+        *   starting at the tree numbered first_number among them.
+        * @param - long.
+        * @return - Iterator of int arrays.
+        * @post - class values are unchanged.
+        **/
+        public SequenceIterator iterator( long first_number )
+        {
+            return new SequenceIterator()
+            { // each iterator has its own weights, so iterators can run on different threads
+                private final long[][] weights = new long[ size + 2 ][ size + 2 ];
+                private final long[] rest = new long[1];
+                private long number = first_number;
+
+                public boolean hasNext()
+                {
+                    return number < total;
+                }
+
+                public int[] next()
+                {
+                    return next( new int[ size ] );
+                }
+
+                public int[] next( int[] output )
+                {
+                    if( number >= total )
+                    {
+                        throw new NoSuchElementException();
+                    }
+
+                    seek( output, 0, 1, size, 0, number++, root - 1, weights, rest );
+
+                    return output;
+                }
+            };
+        }
+
+
+        /**
+        * Returns the filter in words, for messages.
+        * @param - none.
+        * @return - String.
+        * @post - class values are unchanged.
+        **/
+        public String toString()
+        {
+            return ( max_height > 0 ? " of height at most " + max_height : "" ) + ( avl ? " that are AVL balanced" : "" ) +
+                ( root > 0 ? " with root " + root : "" );
+        }
+
+        private boolean fits( int left_height, int right_height )
+        {
+            return !avl || Math.abs( left_height - right_height ) <= 1;
+        }
+
+
+        /**
+        * Returns the greatest height a subtree of tree_size at level can
+        *   have and still have a weight, so the loops over the heights
+        *   of a subtree can stop there.
+        * @param - int, int.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        private int greatest( int tree_size, int level )
+        {
+            return Math.min( greatest_height[ tree_size ], height_limit - level );
+        }
+
+
+        /**
+        * Returns the weight of a left subtree of left_height of a node at
+        *   level whose right subtree has right_size nodes: the sum over
+        *   the heights of the right subtrees that fit it of their count
+        *   times weight[ the height of the node ].
+        * @param - int, int, int, long array.
+        * @return - long.
+        * @post - class values are unchanged.
+        **/
+        private long left_weight( int left_height, int right_size, int level, long[] weight )
+        {
+            long[] right = counts[ right_size ];
+            int least_right = least_height[ right_size ], greatest_right = greatest( right_size, level + 1 );
+            long sum = 0;
+
+            if( avl )
+            {
+                least_right = Math.max( least_right, left_height - 1 );
+                greatest_right = Math.min( greatest_right, left_height + 1 );
+            }
+
+            for( int right_height = least_right; right_height <= greatest_right; ++right_height )
+            {
+                sum += right[ right_height ] * weight[ 1 + Math.max( left_height, right_height ) ];
+            }
+
+            return sum;
+        }
+
+
+        /**
+        * Returns the weighted number of trees of tree_size at level whose
+        *   root is the root_index-th value: the sum over their heights of
+        *   the count of that height times weight[ height ].
+        * @param - int, int, long array, int.
+        * @return - long.
+        * @post - class values are unchanged.
+        **/
+        private long root_count( int tree_size, int root_index, long[] weight, int level )
+        {
+            long[] left = counts[ root_index ];
+            long count = 0;
+
+            for( int left_height = least_height[ root_index ], greatest_left = greatest( root_index, level + 1 );
+                left_height <= greatest_left; ++left_height )
+            {
+                if( left[ left_height ] != 0 )
+                {
+                    count += left[ left_height ] * left_weight( left_height, tree_size - root_index - 1, level, weight );
+                }
+            }
+
+            return count;
+        }
+
+
+        /**
+        * Places the tree of the values first_value and up, of tree_size
+        *   nodes, starting at position, whose weighted number is at most
+        *   rank and within the weight of its height of it. The weight is
+        *   weights[ level - 1 ], or the top weight for the whole tree, and
+        *   a fixed_root of 0 or more fixes the root index. The part of
+        *   rank below the tree's own weight is left in rest[0].
+        * @param - int array, int, int, int, int, long, int, long array array, long array.
+        * @return - int, the height of the tree placed.
+        * @post - the sequence is changed from position, the weights below level are changed.
+        **/
+        private int seek( int[] sequence, int position, int first_value, int tree_size, int level, long rank,
+            int fixed_root, long[][] weights, long[] rest )
+        {
+            if( tree_size == 0 )
+            {
+                rest[0] = rank;
+                return 0;
+            }
+
+            long[] weight = level == 0 ? top_weight : weights[ level - 1 ];
+            long[] child_weight = weights[ level ];
+            int root_index = Math.max( 0, fixed_root );
+
+            if( fixed_root < 0 )
+            {
+                for( long block; rank >= ( block = root_count( tree_size, root_index, weight, level ) ); ++root_index )
+                {
+                    rank -= block;
+                }
+            }
+
+            int left_size = root_index, right_size = tree_size - root_index - 1;
+
+            sequence[ position ] = first_value + root_index;
+
+            for( int left_height = least_height[ left_size ], greatest_left = greatest( left_size, level + 1 );
+                left_height <= greatest_left; ++left_height )
+            { // the right subtrees that complete a left subtree of each height
+                child_weight[ left_height ] = left_weight( left_height, right_size, level, weight );
+            }
+
+            int left_height = seek( sequence, position + 1, first_value, left_size, level + 1, rank, -1, weights, rest );
+
+            for( int right_height = least_height[ right_size ], greatest_right = greatest( right_size, level + 1 );
+                right_height <= greatest_right; ++right_height )
+            { // the left subtree is fixed now
+                child_weight[ right_height ] = fits( left_height, right_height ) ?
+                    weight[ 1 + Math.max( left_height, right_height ) ] : 0;
+            }
+
+            int right_height = seek( sequence, position + 1 + left_size, first_value + root_index + 1, right_size,
+                level + 1, rest[0], -1, weights, rest );
+
+            return 1 + Math.max( left_height, right_height );
+        }
+
+        /**
+        * Returns the height of the subtree at position of tree_size nodes,
+        *   or -1 when the filter asks for balance and it is not balanced.
+        * @param - int array, int, int, int.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        private int height( int[] sequence, int position, int first_value, int tree_size )
+        {
+            if( tree_size == 0 )
+            {
+                return 0;
+            }
+
+            int left_size = sequence[ position ] - first_value;
+            int left_height = height( sequence, position + 1, first_value, left_size );
+            int right_height = height( sequence, position + 1 + left_size, sequence[ position ] + 1,
+                tree_size - left_size - 1 );
+
+            if( left_height < 0 || right_height < 0 || !fits( left_height, right_height ) )
+            {
+                return -1;
+            }
+
+            return 1 + Math.max( left_height, right_height );
+        }
+    }
+
+    /**
+    * A class that finds how the binary search trees of a size are spread
+    *  over their heights, roots, leaf counts and offset spans, without
+    *  enumerating them, so it works for sizes far past the ones that can
+    *  be printed. The counts are BigIntegers.
+    *  The heights come from the same split permutate() makes, a root with
+    *  a left and a right subtree: the trees of s nodes and at most h
+    *  levels are the pairs of subtrees of at most h - 1 levels. The roots
+    *  are the products of the counts of the two sides, and the leaf
+    *  counts have a closed form.
+    *  The offset span, the number of offsets the layout uses, which is
+    *  the width of the picture in cells, depends on the whole contour of
+    *  each subtree. So it is counted exactly by grouping the subtrees of
+    *  each size by their left and right contours only up to
+    *  EXACT_SPAN_LIMIT nodes, where the groups are still few, and above
+    *  it from uniformly random trees made by Remy's algorithm.
+    */
+    static class TreeDistribution
+    {
+        /** the largest size whose offset spans are counted exactly */
+        public static final int EXACT_SPAN_LIMIT = 13;
+
+        /** the number of random trees the offset spans of larger sizes are found from */
+        public static final int DEFAULT_SAMPLES = 10000;
+
+        private static final int NONE = -1;
+
+        /**
+        * Returns the number of trees of input_size of each height,
+        *   indexed by the height in levels. The trees of at most h levels
+        *   are counted for each size, from h = 1 up, and the trees of
+        *   exactly h levels are the difference for input_size. A size of
+        *   h or less always fits in h levels and one above 2^h - 1 never
+        *   does, so only the sizes between are summed. That is still
+        *   O(n^3) products of BigIntegers of up to 2n bits, which is
+        *   most of the time of --distribution past a few hundred.
+        * @param - int.
+        * @return - BigInteger array.
+        * @post - class values are unchanged.
+        **/
+        public static BigInteger[] heights( int input_size )
+        {
+            BigInteger[] counts = new BigInteger[ input_size + 1 ];
+            BigInteger[] fitting = new BigInteger[ input_size + 1 ], next = new BigInteger[ input_size + 1 ];
+            BigInteger fitting_before = BigInteger.ZERO;
+
+            Arrays.fill( counts, BigInteger.ZERO );
+            Arrays.fill( fitting, BigInteger.ZERO );
+            fitting[0] = BigInteger.ONE; // in no levels only the empty tree fits
+
+            for( int height = 1; height <= input_size; ++height )
+            {
+                next[0] = BigInteger.ONE;
+
+                for( int size = 1; size <= input_size; ++size )
+                {
+                    if( size <= height )
+                    {
+                        next[ size ] = TreeCount.big_count( size );
+                    }
+                    else if( height < 31 && size > ( 1 << height ) - 1 )
+                    {
+                        next[ size ] = BigInteger.ZERO;
+                    }
+                    else
+                    { // the pairs of subtrees, each pair of different sizes twice
+                        BigInteger sum = BigInteger.ZERO;
+                        int rest = size - 1;
+
+                        for( int left_size = 0; left_size < rest - left_size; ++left_size )
+                        {
+                            if( fitting[ left_size ].signum() != 0 && fitting[ rest - left_size ].signum() != 0 )
+                            {
+                                sum = sum.add( fitting[ left_size ].multiply( fitting[ rest - left_size ] ) );
+                            }
+                        }
+
+                        sum = sum.shiftLeft( 1 );
+
+                        if( rest % 2 == 0 )
+                        {
+                            sum = sum.add( fitting[ rest / 2 ].multiply( fitting[ rest / 2 ] ) );
+                        }
+
+                        next[ size ] = sum;
+                    }
+                }
+
+                counts[ height ] = next[ input_size ].subtract( fitting_before );
+                fitting_before = next[ input_size ];
+
+                BigInteger[] swap = fitting;
+                fitting = next;
+                next = swap;
+            }
+
+            return counts;
+        }
+
+
+        /**
+        * Returns the number of trees of input_size with each root,
+        *   indexed by the root value: the count of the left side
+        *   times the count of the right side.
+        * @param - int.
+        * @return - BigInteger array.
+        * @post - class values are unchanged.
+        **/
+        public static BigInteger[] roots( int input_size )
+        {
+            BigInteger[] counts = new BigInteger[ input_size + 1 ];
+
+            counts[0] = BigInteger.ZERO;
+
+            for( int root = 1; root <= input_size; ++root )
+            {
+                counts[ root ] = TreeCount.big_count( root - 1 ).multiply( TreeCount.big_count( input_size - root ) );
+            }
+
+            return counts;
+        }
+
+
+        /**
+        * Returns the number of trees of input_size with each number of
+        *   leaves, indexed by the leaf count. A tree of n nodes and k
+        *   leaves is a full binary tree of k - 1 inner nodes, with the
+        *   other n - 2k + 1 nodes each put in as a single child, left or
+        *   right, along its 2k - 1 nodes: 2^( n - 2k + 1 ) times
+        *   ( n - 1 choose 2k - 2 ) times the Catalan number of k - 1.
+        * @param - int.
+        * @return - BigInteger array.
+        * @post - class values are unchanged.
+        **/
+        public static BigInteger[] leaves( int input_size )
+        {
+            BigInteger[] counts = new BigInteger[ input_size + 1 ];
+            BigInteger choose = BigInteger.ONE; // n - 1 choose 2k - 2
+
+            Arrays.fill( counts, BigInteger.ZERO );
+
+            for( int leaf_count = 1; 2 * leaf_count - 1 <= input_size; ++leaf_count )
+            {
+                if( leaf_count > 1 )
+                { // from n - 1 choose 2k - 4
+                    int chosen = 2 * leaf_count - 2;
+
+                    choose = choose.multiply( BigInteger.valueOf( (long) ( input_size - chosen + 1 ) * ( input_size - chosen ) ) )
+                        .divide( BigInteger.valueOf( (long) chosen * ( chosen - 1 ) ) );
+                }
+
+                counts[ leaf_count ] = choose.multiply( TreeCount.big_count( leaf_count - 1 ) )
+                    .shiftLeft( input_size - 2 * leaf_count + 1 );
+            }
+
+            return counts;
+        }
+
+
+        /**
+        * Returns the number of trees of input_size with each offset span,
+        *   indexed by the span. The subtrees of each size are kept in
+        *   groups with the same contours, a ShapeCache.Shape for each,
+        *   with the number of subtrees in each group. A group of each
+        *   size on the left and on the right of a root makes a group of
+        *   the larger size by ShapeCache.combine(), the way the cache and
+        *   the layout place two children.
+        * @param - int.
+        * @return - long array.
+        * @post - class values are unchanged.
+        * @exception IllegalArgumentException
+        *   Indicates input_size is above EXACT_SPAN_LIMIT.
+        **/
+        public static long[] spans( int input_size )
+        {
+            if( input_size > EXACT_SPAN_LIMIT )
+            {
+                throw new IllegalArgumentException( "the spans of " + input_size + " are not counted exactly" );
+            }
+
+            List<Map<ShapeCache.Shape, Long>> groups = new ArrayList<Map<ShapeCache.Shape, Long>>();
+            long[] counts = new long[ 2 * input_size + 2 ];
+
+            groups.add( new HashMap<ShapeCache.Shape, Long>() );
+            groups.get(0).put( null, 1L ); // the empty subtree, which combine() takes as null
+
+            for( int size = 1; size <= input_size; ++size )
+            {
+                Map<ShapeCache.Shape, Long> sized = new HashMap<ShapeCache.Shape, Long>();
+
+                for( int left_size = 0; left_size < size; ++left_size )
+                {
+                    for( Map.Entry<ShapeCache.Shape, Long> left: groups.get( left_size ).entrySet() )
+                    {
+                        for( Map.Entry<ShapeCache.Shape, Long> right: groups.get( size - 1 - left_size ).entrySet() )
+                        {
+                            sized.merge( ShapeCache.combine( left.getKey(), right.getKey(), new ShapeCache.Shape() ),
+                                left.getValue() * right.getValue(), Long::sum );
+                        }
+                    }
+                }
+
+                groups.add( sized );
+            }
+
+            for( Map.Entry<ShapeCache.Shape, Long> group: groups.get( input_size ).entrySet() )
+            {
+                ShapeCache.Shape shape = group.getKey();
+                int greatest = 0;
+
+                for( int level = 0; level < shape.height; ++level )
+                {
+                    greatest = Math.max( greatest, shape.greatest[ level ] );
+                }
+
+                counts[ greatest - shape.least_offset + 1 ] += group.getValue();
+            }
+
+            return counts;
+        }
+
+
+        /**
+        * Returns the number of sample_count random trees of input_size with
+        *   each offset span, indexed by the span. Each tree is grown by
+        *   Remy's algorithm, which makes every full binary tree of
+        *   input_size inner nodes equally likely, so its inner nodes are a
+        *   uniformly random tree of input_size nodes. It is laid out by
+        *   ContourLayout. The same seed gives the same samples.
+        * @param - int, int, long.
+        * @return - long array.
+        * @post - class values are unchanged.
+        **/
+        public static long[] sample_spans( int input_size, int sample_count, long seed )
+        {
+            SplittableRandom random = new SplittableRandom( seed );
+            int node_count = 2 * input_size + 1;
+            int[] parent = new int[ node_count ], left = new int[ node_count ], right = new int[ node_count ];
+            int[] left_link = new int[ input_size ], right_link = new int[ input_size ], offset = new int[ input_size ];
+            ContourLayout layout = new ContourLayout( input_size );
+            long[] counts = new long[ 2 * input_size + 2 ];
+
+            for( int sample = 0; sample < sample_count; ++sample )
+            {
+                int root = 0;
+
+                parent[0] = NONE;
+                left[0] = NONE;
+                right[0] = NONE;
+
+                for( int inner = 1; inner < node_count; inner += 2 )
+                { // a random node moves down under a new inner node, with a new leaf on a random side
+                    int moved = random.nextInt( inner ), leaf = inner + 1, above = parent[ moved ];
+                    boolean moved_left = random.nextBoolean();
+
+                    parent[ inner ] = above;
+
+                    if( above == NONE )
+                    {
+                        root = inner;
+                    }
+                    else if( left[ above ] == moved )
+                    {
+                        left[ above ] = inner;
+                    }
+                    else
+                    {
+                        right[ above ] = inner;
+                    }
+
+                    left[ inner ] = moved_left ? moved : leaf;
+                    right[ inner ] = moved_left ? leaf : moved;
+                    parent[ moved ] = inner;
+                    parent[ leaf ] = inner;
+                    left[ leaf ] = NONE;
+                    right[ leaf ] = NONE;
+                }
+
+                for( int inner = 1; inner < node_count; inner += 2 )
+                { // the inner nodes are the odd ones, the leaves are missing links
+                    left_link[ inner / 2 ] = left[ inner ] % 2 == 1 ? left[ inner ] / 2 : NONE;
+                    right_link[ inner / 2 ] = right[ inner ] % 2 == 1 ? right[ inner ] / 2 : NONE;
+                }
+
+                layout.layout( root / 2, input_size, left_link, right_link, offset );
+
+                int span = 0;
+
+                for( int node = 0; node < input_size; ++node )
+                {
+                    span = Math.max( span, offset[ node ] );
+                }
+
+                ++counts[ span ];
+            }
+
+            return counts;
+        }
+
+
+        /**
+        * Writes the distributions of the trees of input_size to sink, the
+        *   offset spans sampled from sample_count trees when input_size is
+        *   above EXACT_SPAN_LIMIT.
+        * @param - int, int, OutputSink.
+        * @return - none.
+        * @post - the distributions are buffered in sink.
+        **/
+        public static void print( int input_size, int sample_count, OutputSink sink )
+        {
+            BigInteger total = TreeCount.big_count( input_size );
+
+            sink.printf( "Binary search tree count = %,d\n", total );
+            print_counts( sink, "Trees by height, in levels", heights( input_size ), total );
+            print_counts( sink, "Trees by root", roots( input_size ), total );
+            print_counts( sink, "Trees by number of leaves", leaves( input_size ), total );
+
+            if( input_size <= EXACT_SPAN_LIMIT )
+            {
+                print_counts( sink, "Trees by offset span, the width in cells", to_big( spans( input_size ) ), total );
+            }
+            else
+            {
+                print_counts( sink, String.format( "Random trees by offset span, the width in cells, of %,d samples",
+                    sample_count ), to_big( sample_spans( input_size, sample_count, input_size ) ),
+                    BigInteger.valueOf( sample_count ) );
+            }
+        }
+
+        private static BigInteger[] to_big( long[] counts )
+        {
+            BigInteger[] big_counts = new BigInteger[ counts.length ];
+
+            for( int index = 0; index < counts.length; ++index )
+            {
+                big_counts[ index ] = BigInteger.valueOf( counts[ index ] );
+            }
+
+            return big_counts;
+        }
+
+
+        /**
+        * Writes a titled table of the counts that are not zero, with the
+        *   share of total each is, followed by the mean value.
+        * @param - OutputSink, String, BigInteger array, BigInteger.
+        * @return - none.
+        * @post - the table is buffered in sink.
+        **/
+        private static void print_counts( OutputSink sink, String title, BigInteger[] counts, BigInteger total )
+        {
+            BigDecimal big_total = new BigDecimal( total );
+            BigInteger value_sum = BigInteger.ZERO;
+
+            sink.printf( "\n%s:\n", title );
+
+            for( int value = 0; value < counts.length; ++value )
+            {
+                if( counts[ value ].signum() != 0 )
+                {
+                    double share = new BigDecimal( counts[ value ] ).divide( big_total, MathContext.DECIMAL64 ).doubleValue();
+
+                    sink.printf( "%8d %10.6f%%  %,d\n", value, 100 * share, counts[ value ] );
+                    value_sum = value_sum.add( counts[ value ].multiply( BigInteger.valueOf( value ) ) );
+                }
+            }
+
+            sink.printf( "    mean %.6f\n", new BigDecimal( value_sum ).divide( big_total, MathContext.DECIMAL64 ).doubleValue() );
+        }
+    }
+
+    /**
+    * A class that renders a range of the trees of a given size on
+    *  worker threads and writes them in order, as a pipeline: the range
+    *  is handed out in batches of contiguous tree numbers, a worker
+    *  renders each tree of its batch into the batch's byte buffer, and
+    *  the calling thread writes the buffers to the sink by batch number.
+    *  There are a fixed number of buffers, which are reused, and a
+    *  worker waits for a free one before taking the next batch. So the
+    *  workers can be at most that many batches ahead of the writer,
+    *  however slow the sink is, and a fast sink waits only on the next
+    *  batch in order.
+    *  Each worker enumerates its batch from its first tree number and
+    *  keeps its own shape cache, so the batches share nothing.
+    */
+    static class RenderPipeline
+    {
+        /** the number of trees in each batch */
+        public static final int BATCH_TREES = 256;
+
+        /** the number of buffers for each worker */
+        public static final int BUFFERS_PER_WORKER = 4;
+
+        /**
+        * A buffer of rendered trees: a sink that writes into a byte
+        *   array, which grows to the size of the largest batch.
+        */
+        private static final class Batch implements WritableByteChannel
+        {
+            private final OutputSink sink = new OutputSink( this, false, 1 << 16 );
+            private byte[] bytes = new byte[ 1 << 16 ];
+            private int length;
+            private Throwable failure;
+
+            public int write( ByteBuffer source )
+            {
+                int count = source.remaining();
+
+                if( length + count > bytes.length )
+                {
+                    bytes = Arrays.copyOf( bytes, Math.max( length + count, 2 * bytes.length ) );
+                }
+
+                source.get( bytes, length, count );
+                length += count;
+
+                return count;
+            }
+
+            public boolean isOpen()
+            {
+                return true;
+            }
+
+            public void close()
+            {
+            }
+        }
+
+        private final int size;
+        private final long first_number, end_number;
+        private final int batch_trees;
+        private final TreeFilter filter;
+        private final Options options;
+        private final ArrayBlockingQueue<Batch> free;
+        private final Batch[] rendered; // the rendered batch of each number, at number % rendered.length
+        private final AtomicLong next_batch;
+
+
+        /**
+         * Constructor for a pipeline that renders the trees numbered
+         *   input_first up to but not including input_end (counting from
+         *   zero) on the options' threads. The numbers count the trees
+         *   that pass input_filter, or every tree when it is null. When
+         *   the options flush every tree the batches are of one tree.
+         * @param - int, long, long, TreeFilter, Options.
+         * @post - 
+         *   the buffers are allocated, nothing is rendered yet.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory.
+         **/ 
+        public RenderPipeline( int input_size, long input_first, long input_end, TreeFilter input_filter,
+            Options input_options )
+        {
+            size = input_size;
+            first_number = input_first;
+            end_number = input_end;
+            batch_trees = input_options.flush_each ? 1 : BATCH_TREES;
+            filter = input_filter;
+            options = input_options;
+            free = new ArrayBlockingQueue<Batch>( BUFFERS_PER_WORKER * options.threads );
+            rendered = new Batch[ BUFFERS_PER_WORKER * options.threads ];
+            next_batch = new AtomicLong();
+
+            while( free.remainingCapacity() > 0 )
+            {
+                free.add( new Batch() );
+            }
+        }
+
+
+        /**
+        * Renders the range on the workers and writes it to sink in
+        *   order, returning when every tree is written.
+        * @param - OutputSink.
+        * @return - none.
+        * @post - the trees are buffered in sink, the workers have stopped.
+        * @exception IllegalStateException
+        *   Indicates a worker failed with a checked exception, a worker's
+        *   unchecked exception or error is thrown as it is.
+        **/
+        public void run( OutputSink sink )
+        {
+            Thread[] workers = new Thread[ options.threads ];
+            long batch_count = ( end_number - first_number + batch_trees - 1 ) / batch_trees;
+
+            for( int index = 0; index < workers.length; ++index )
+            {
+                workers[ index ] = new Thread( this::work, "render-" + ( index + 1 ) );
+                workers[ index ].setDaemon( true );
+                workers[ index ].start();
+            }
+
+            try
+            {
+                for( long number = 0; number < batch_count; ++number )
+                {
+                    Batch batch = take( number );
+                    long mark = Stats.enabled ? System.nanoTime() : 0;
+
+                    if( batch.failure instanceof RuntimeException )
+                    {
+                        throw (RuntimeException) batch.failure;
+                    }
+                    else if( batch.failure instanceof Error )
+                    {
+                        throw (Error) batch.failure;
+                    }
+                    else if( batch.failure != null )
+                    {
+                        throw new IllegalStateException( batch.failure );
+                    }
+
+                    sink.write( batch.bytes, 0, batch.length );
+                    batch.length = 0;
+                    free.add( batch );
+
+                    if( options.flush_each )
+                    {
+                        sink.flush();
+                    }
+
+                    if( Stats.enabled )
+                    {
+                        Stats.lap( Stats.WRITE, mark );
+                    }
+                }
+
+                for( Thread worker: workers )
+                { // the idle workers wait for a buffer, they stop and report their caches
+                    worker.interrupt();
+                    worker.join();
+                }
+            }
+            catch( InterruptedException exception )
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException( "interrupted while writing the trees", exception );
+            }
+            finally
+            {
+                for( Thread worker: workers )
+                {
+                    worker.interrupt(); // does nothing to a stopped worker
+                }
+            }
+        }
+
+
+        /**
+        * Returns the rendered batch number, waiting for it.
+        * @param - long.
+        * @return - Batch.
+        * @post - the batch is taken out of rendered.
+        **/
+        private synchronized Batch take( long number ) throws InterruptedException
+        {
+            int slot = (int) ( number % rendered.length );
+
+            while( rendered[ slot ] == null )
+            {
+                wait();
+            }
+
+            Batch batch = rendered[ slot ];
+            rendered[ slot ] = null;
+
+            return batch;
+        }
+
+        private synchronized void put( long number, Batch batch )
+        {
+            rendered[ (int) ( number % rendered.length ) ] = batch;
+            notifyAll();
+        }
+
+
+        /**
+        * Takes a free buffer and the next batch and renders it, until
+        *   the batches run out. A batch is taken only with a buffer in
+        *   hand, and buffers come back only as batches are written in
+        *   order, so the batches not yet written are fewer than the
+        *   buffers and each has its own slot in rendered.
+        * @param - none.
+        * @return - none.
+        * @post - the batches taken are in rendered.
+        **/
+        private void work()
+        {
+            IntTree int_tree = new IntTree( size );
+            ShapeCache shape_cache = options.shape_cache( size );
+            int[] sequence = new int[ size ];
+
+            try
+            {
+                while( true )
+                {
+                    Batch batch = free.take();
+                    long number = next_batch.getAndIncrement();
+                    long first = first_number + number * batch_trees;
+
+                    if( first >= end_number )
+                    {
+                        break;
+                    }
+
+                    try
+                    {
+                        render( first, Math.min( end_number, first + batch_trees ), batch.sink, int_tree, shape_cache,
+                            sequence );
+                        batch.sink.flush();
+                    }
+                    catch( Throwable failure )
+                    {
+                        batch.failure = failure;
+                    }
+
+                    put( number, batch );
+                }
+            }
+            catch( InterruptedException exception )
+            {
+                // the writer stopped early
+            }
+
+            if( shape_cache != null )
+            {
+                shape_cache.report();
+            }
+        }
+
+
+        /**
+        * Renders the trees numbered first up to but not including end
+        *   into sink, the way print_all_trees() prints them, with each
+        *   sequence copied into sequence_buffer.
+        * @param - long, long, OutputSink, IntTree, ShapeCache, int array.
+        * @return - none.
+        * @post - the trees are buffered in sink.
+        **/
+        private void render( long first, long end, OutputSink sink, IntTree int_tree, ShapeCache shape_cache,
+            int[] sequence_buffer )
+        {
+            SequenceIterator enumerator = tree_enumerator( size, first, filter );
+
+            for( long number = first; number < end; ++number )
+            {
+                long mark = Stats.enabled ? System.nanoTime() : 0;
+                int[] sequence = enumerator.next( sequence_buffer );
+                char[] picture;
+                int picture_length;
+
+                if( Stats.enabled )
+                {
+                    mark = Stats.lap( Stats.ENUMERATE, mark );
+                }
+
+                if( shape_cache != null )
+                {
+                    shape_cache.render( sequence, false );
+                    picture = shape_cache.canvas();
+                    picture_length = shape_cache.length();
+                }
+                else
+                {
+                    int_tree.build( sequence ); // times its own construction and layout
+                    mark = Stats.enabled ? System.nanoTime() : 0;
+
+                    TreeCanvas canvas = int_tree.render( false );
+                    picture = canvas.canvas();
+                    picture_length = canvas.length();
+                }
+
+                if( Stats.enabled )
+                {
+                    mark = Stats.lap( Stats.RENDER, mark );
+                }
+
+                write_tree( sink, number + 1, sequence, picture, picture_length );
+
+                if( Stats.enabled )
+                {
+                    Stats.lap( Stats.WRITE, mark );
+                }
+            }
+        }
+    }
+
+
+    /**
+    * A class that holds the command line options that
+    *  change how the trees are produced.
+    */
+    static class Options
+    {
+        /** the number of threads used to render, 1 renders on the calling thread */
+        public int threads = 1;
+
+        /** the file the trees are written to, null writes them to standard output */
+        public String output_path = null;
+
+        /** whether the output is flushed after every tree */
+        public boolean flush_each = false;
+
+        /** the first tree number printed and the one after the last, 0 prints to the end */
+        public long first_tree = 1, end_tree = 0;
+
+        /** the shard printed, from 1, and the number of shards, 0 prints every tree */
+        public int shard_index = 0, shard_count = 0;
+
+        /** whether the arguments are shard output files to merge */
+        public boolean merge = false;
+
+        /** the filter on the trees printed: the most levels, 0 for any, AVL balance and the root, 0 for any */
+        public int max_height = 0, root = 0;
+        public boolean avl = false;
+
+        /** whether the trees are printed in rotation order by one changing tree */
+        public boolean rotations = false;
+
+        /** whether the trees are written as binary records instead of pictures */
+        public boolean binary = false;
+
+        /** whether the argument is a binary tree file to print as pictures */
+        public boolean decode = false;
+
+        /** whether the distributions of the trees of the argument are printed instead of the trees */
+        public boolean distribution = false;
+
+        /** the number of random trees the distribution of larger sizes samples the widths from */
+        public int samples = TreeDistribution.DEFAULT_SAMPLES;
+
+        /** the levels and offsets of a tree of strings written, from 1 up to but not including the end, 0 to the last */
+        public int first_level = 1, end_level = 0, first_offset = 1, end_offset = 0;
+
+        /** the file the keys of a tree of strings are read from, "-" for standard input, null for the arguments */
+        public String keys_path = null;
+
+        /** whether a summary of the counters is printed to standard error at the end */
+        public boolean stats = false;
+
+        /** the most subtree layouts kept by each shape cache, 0 renders without one */
+        public int cache_entries = ShapeCache.DEFAULT_ENTRIES;
+
+        /** the arguments left after the options */
+        public String[] arguments = new String[0];
+
+
+        /**
+        * Returns the options at the start of args. An option starts with
+        *   "--", the options end at the first argument that is not one
+        *   or after a "--" argument, which is the only way to give
+        *   strings that start with "--". Any other argument starting
+        *   with "--" must be one of these options.
+        *   --parallel[=threads]    render on every core or on threads cores.
+        *   --output=file           write the trees to file instead of standard output.
+        *   --flush                 flush the output after every tree.
+        *   --tree=k                print only tree number k.
+        *   --trees=first,end       print the tree numbers from first up to
+        *                           but not including end.
+        *   --shard=i/N             print the i-th of N equal runs of tree numbers.
+        *   --merge                 join and check the shard files given as the arguments.
+        *   --height=h              print only the trees of at most h levels.
+        *   --avl                   print only the AVL balanced trees.
+        *   --root=r                print only the trees with the root r.
+        *   --rotations             print the trees in rotation order, each tree made
+        *                           from the one before by one rotation.
+        *   --binary                write the shape of each tree as a binary record.
+        *   --decode                print the trees of the binary tree file given as
+        *                           the argument.
+        *   --distribution          print how the trees of the integer given as the
+        *                           argument spread over heights, roots, leaf counts
+        *                           and widths, without printing the trees. The
+        *                           heights take time in the cube of the integer,
+        *                           about 6 seconds for 500 and a minute for 1000.
+        *   --samples=k             sample the widths of --distribution from k random
+        *                           trees when they are too many to count exactly.
+        *   --rows=first,end        write only the levels of a tree of strings from
+        *                           first up to but not including end.
+        *   --columns=first,end     write only the offsets of a tree of strings from
+        *                           first up to but not including end.
+        *   --keys[=file]           read the keys of a tree of strings from file, one
+        *                           to a line, or from standard input.
+        *   --cache=entries         keep at most entries subtree layouts in the shape
+        *                           cache, 0 renders every tree without one.
+        *   --stats                 print a summary of the run to standard error.
+        * @param - String array.
+        * @return - Options.
+        * @post - class values are unchanged.
+        * @exception IllegalArgumentException
+        *   Indicates an unknown option or an option with an unusable value.
+        **/
+        public static Options parse( String[] args )
+        {
+            Options options = new Options();
+            int index = 0;
+
+            for( ; index < args.length && args[ index ].startsWith( "--" ); ++index )
+            {
+                String name = args[ index ];
+                String value = null;
+
+                if( name.indexOf( '=' ) > 0 )
+                {
+                    value = name.substring( name.indexOf( '=' ) + 1 );
+                    name = name.substring( 0, name.indexOf( '=' ) );
+                }
+
+                if( name.equals( "--" ) )
+                {
+                    ++index;
+                    break;
+                }
+                else if( name.equals( "--parallel" ) )
+                {
+                    options.threads = value == null ? Runtime.getRuntime().availableProcessors() : parse_count( name, value );
+                }
+                else if( name.equals( "--output" ) )
+                {
+                    if( value == null || value.isEmpty() )
+                    {
+                        throw new IllegalArgumentException( "--output needs a file name" );
+                    }
+
+                    options.output_path = value;
+                }
+                else if( name.equals( "--flush" ) )
+                {
+                    options.flush_each = true;
+                }
+                else if( name.equals( "--tree" ) )
+                {
+                    options.first_tree = parse_number( name, value );
+                    options.end_tree = options.first_tree + 1;
+                }
+                else if( name.equals( "--trees" ) )
+                {
+                    if( value == null || value.indexOf( ',' ) < 0 )
+                    {
+                        throw new IllegalArgumentException( "--trees needs a first and an end tree number, as first,end" );
+                    }
+
+                    options.first_tree = parse_number( name, value.substring( 0, value.indexOf( ',' ) ) );
+                    options.end_tree = parse_number( name, value.substring( value.indexOf( ',' ) + 1 ) );
+
+                    if( options.end_tree <= options.first_tree )
+                    {
+                        throw new IllegalArgumentException( "--trees needs the end after the first tree number" );
+                    }
+                }
+                else if( name.equals( "--shard" ) )
+                {
+                    if( value == null || value.indexOf( '/' ) < 0 )
+                    {
+                        throw new IllegalArgumentException( "--shard needs a shard and a shard count, as i/N" );
+                    }
+
+                    options.shard_index = parse_count( name, value.substring( 0, value.indexOf( '/' ) ) );
+                    options.shard_count = parse_count( name, value.substring( value.indexOf( '/' ) + 1 ) );
+
+                    if( options.shard_index > options.shard_count )
+                    {
+                        throw new IllegalArgumentException( "--shard needs i between 1 and N" );
+                    }
+                }
+                else if( name.equals( "--merge" ) )
+                {
+                    options.merge = true;
+                }
+                else if( name.equals( "--height" ) )
+                {
+                    options.max_height = parse_count( name, value );
+                }
+                else if( name.equals( "--avl" ) )
+                {
+                    options.avl = true;
+                }
+                else if( name.equals( "--root" ) )
+                {
+                    options.root = parse_count( name, value );
+                }
+                else if( name.equals( "--rotations" ) )
+                {
+                    options.rotations = true;
+                }
+                else if( name.equals( "--binary" ) )
+                {
+                    options.binary = true;
+                }
+                else if( name.equals( "--decode" ) )
+                {
+                    options.decode = true;
+                }
+                else if( name.equals( "--distribution" ) )
+                {
+                    options.distribution = true;
+                }
+                else if( name.equals( "--samples" ) )
+                {
+                    options.samples = parse_count( name, value );
+                }
+                else if( name.equals( "--rows" ) || name.equals( "--columns" ) )
+                {
+                    if( value == null || value.indexOf( ',' ) < 0 )
+                    {
+                        throw new IllegalArgumentException( name + " needs a first and an end, as first,end" );
+                    }
+
+                    int first = parse_count( name, value.substring( 0, value.indexOf( ',' ) ) );
+                    int end = parse_count( name, value.substring( value.indexOf( ',' ) + 1 ) );
+
+                    if( end <= first )
+                    {
+                        throw new IllegalArgumentException( name + " needs the end after the first" );
+                    }
+
+                    if( name.equals( "--rows" ) )
+                    {
+                        options.first_level = first;
+                        options.end_level = end;
+                    }
+                    else
+                    {
+                        options.first_offset = first;
+                        options.end_offset = end;
+                    }
+                }
+                else if( name.equals( "--keys" ) )
+                {
+                    if( value != null && value.isEmpty() )
+                    {
+                        throw new IllegalArgumentException( "--keys needs a file name, or none for standard input" );
+                    }
+
+                    options.keys_path = value == null ? KeyFile.STANDARD_INPUT : value;
+                }
+                else if( name.equals( "--stats" ) )
+                {
+                    options.stats = true;
+                }
+                else if( name.equals( "--cache" ) )
+                {
+                    options.cache_entries = value != null && value.equals( "0" ) ? 0 : parse_count( name, value );
+                }
+                else
+                { // a mistyped option would otherwise become a string key
+                    throw new IllegalArgumentException( "unknown option " + name );
+                }
+            }
+
+            options.arguments = Arrays.copyOfRange( args, index, args.length );
+
+            if( options.shard_count > 0 && ( options.first_tree != 1 || options.end_tree != 0 ) )
+            {
+                throw new IllegalArgumentException( "--shard can not be used with --tree or --trees" );
+            }
+
+            if( ( options.binary ? 1 : 0 ) + ( options.decode ? 1 : 0 ) + ( options.merge ? 1 : 0 ) > 1 )
+            {
+                throw new IllegalArgumentException( "only one of --binary, --decode and --merge can be used" );
+            }
+
+            if( options.rotations && ( options.ranged() || options.threads > 1 || options.binary || options.decode ||
+                options.filtered() ) )
+            {
+                throw new IllegalArgumentException( "--rotations prints every tree on one thread, it can not be used " +
+                    "with --tree, --trees, --shard, --parallel, --binary, --decode or a filter" );
+            }
+
+            if( options.distribution && ( options.ranged() || options.merge || options.binary || options.decode ||
+                options.rotations || options.filtered() ) )
+            {
+                throw new IllegalArgumentException( "--distribution counts every tree, it can not be used with --tree, " +
+                    "--trees, --shard, --merge, --binary, --decode, --rotations or a filter" );
+            }
+
+            if( options.decode && options.filtered() )
+            {
+                throw new IllegalArgumentException( "--decode prints the trees of the file, it can not be used with a filter" );
+            }
+
+            if( options.decode && options.shard_count > 0 )
+            {
+                throw new IllegalArgumentException( "--decode can not be used with --shard" );
+            }
+
+            if( options.viewed() && ( options.merge || options.decode || options.distribution ||
+                ( options.arguments.length == 0 && options.keys_path == null ) ||
+                ( options.arguments.length == 1 && options.arguments[0].chars().allMatch( Character::isDigit ) ) ) )
+            {
+                throw new IllegalArgumentException( "--rows and --columns write a window of a tree of strings" );
+            }
+
+            if( options.keys_path != null && ( options.arguments.length > 0 || options.merge || options.binary ||
+                options.decode || options.distribution ) )
+            {
+                throw new IllegalArgumentException( "--keys reads the keys of a tree of strings, it can not be used " +
+                    "with arguments, --merge, --binary, --decode or --distribution" );
+            }
+
+            return options;
+        }
+
+
+        /**
+        * Returns a sink for the output the options choose.
+        * @param - none.
+        * @return - OutputSink.
+        * @post - the output file is opened, if there is one.
+        * @exception UncheckedIOException
+        *   Indicates the output file could not be opened.
+        **/
+        public OutputSink open_sink()
+        {
+            return output_path == null ? OutputSink.standard_output() : OutputSink.file( output_path );
+        }
+
+
+        /**
+        * Returns a new shape cache for trees of input_size, or null when
+        *   the options turn the cache off or the trees are too large.
+        * @param - int.
+        * @return - ShapeCache.
+        * @post - class values are unchanged.
+        **/
+        public ShapeCache shape_cache( int input_size )
+        {
+            return cache_entries > 0 && input_size <= ShapeCache.MAX_SIZE ? new ShapeCache( cache_entries ) : null;
+        }
+
+
+        /**
+        * Returns the filter the options choose for the trees of
+        *   input_size, or null when every tree is printed.
+        * @param - int.
+        * @return - TreeFilter.
+        * @post - class values are unchanged.
+        **/
+        public TreeFilter tree_filter( int input_size )
+        {
+            return filtered() ? new TreeFilter( input_size, max_height, avl, root ) : null;
+        }
+
+
+        /**
+        * Returns whether the options print only the trees that pass a filter.
+        * @param - none.
+        * @return - boolean.
+        * @post - class values are unchanged.
+        **/
+        public boolean filtered()
+        {
+            return max_height > 0 || avl || root > 0;
+        }
+
+
+        /**
+        * Returns whether the options write only a window of a tree of strings.
+        * @param - none.
+        * @return - boolean.
+        * @post - class values are unchanged.
+        **/
+        public boolean viewed()
+        {
+            return first_level != 1 || end_level != 0 || first_offset != 1 || end_offset != 0;
+        }
+
+
+        /**
+        * Returns whether the options print only part of the trees.
+        * @param - none.
+        * @return - boolean.
+        * @post - class values are unchanged.
+        **/
+        public boolean ranged()
+        {
+            return first_tree != 1 || end_tree != 0 || shard_count > 0;
+        }
+
+
+        /**
+        * Returns the tree number, counting from zero, that shard
+        *   shard_number (counting from zero) of shard_total starts at,
+        *   when total trees are split into shards that differ in size
+        *   by at most one.
+        * @param - long, int, int.
+        * @return - long.
+        * @post - class values are unchanged.
+        **/
+        public static long shard_start( long total, int shard_number, int shard_total )
+        {
+            return BigInteger.valueOf( total ).multiply( BigInteger.valueOf( shard_number ) )
+                .divide( BigInteger.valueOf( shard_total ) ).longValue();
+        }
+
+
+        /**
+        * Returns the positive integer value of an option.
+        * @param - String, String.
+        * @return - int.
+        * @post - class values are unchanged.
+        * @exception IllegalArgumentException
+        *   Indicates the value is missing or not a positive integer.
+        **/
+        private static int parse_count( String name, String value )
+        {
+            long count = parse_number( name, value );
+
+            if( count > Integer.MAX_VALUE )
+            {
+                throw new IllegalArgumentException( String.format( "%s is too large, not \"%s\"", name, value ) );
+            }
+
+            return (int) count;
+        }
+
+
+        /**
+        * Returns the positive long value of an option.
+        * @param - String, String.
+        * @return - long.
+        * @post - class values are unchanged.
+        * @exception IllegalArgumentException
+        *   Indicates the value is missing or not a positive integer.
+        **/
+        private static long parse_number( String name, String value )
+        {
+            if( value == null )
+            {
+                throw new IllegalArgumentException( String.format( "%s needs a value, as %s=k", name, name ) );
+            }
+
+            if( value.isEmpty() || value.length() > 18 || !value.chars().allMatch( Character::isDigit ) ||
+                Long.parseLong( value ) < 1 )
+            {
+                throw new IllegalArgumentException( String.format( "%s needs a positive integer, not \"%s\"", name, value ) );
+            }
+
+            return Long.parseLong( value );
+        }
+    }
+
+    /**
+    * A class that holds a binary search tree on primitive integers.
+    *  The keys, links and offsets of the nodes are held in parallel
+    *  arrays, a node is an index into them and a missing link is -1.
+    *  The arrays are kept between calls to build(), so one tree can
+    *  be reused for every sequence of an enumeration.
+    *  The tree is printed the same way as a Tree of Integers.
+    */
+    static class IntTree
+    {
+        private static final int NONE = -1;
+        private static final String[] small_labels = new String[ 1024 ];
+
+        private int[] key, left_link, right_link, offset;
+        private String[] labels;
+        private int size, longest_width;
+        private ContourLayout layout;
+        private TreeCanvas canvas;
+
+
+        /**
+         * Constructor for an empty tree with room for
+         *   input_capacity nodes before the arrays grow.
+         * @param - int.
+         * @post - an empty tree is allocated.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory.
+         **/ 
+        public IntTree( int input_capacity )
+        {
+            allocate( Math.max( 1, input_capacity ) );
+            layout = new ContourLayout( input_capacity );
+            canvas = new TreeCanvas( input_capacity );
+            size = 0;
+            longest_width = 0;
+        }
+
+
+        /**
+         * Constructs a tree using the 
+         *   specified preexisting array.
+         * @param - int array.
+         * @post -
+         *   a tree constructed from the supplied array.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory for the tree.
+         **/
+        public IntTree( int[] input_array )
+        {
+            this( input_array.length );
+            build( input_array );
+        }
+
+
+        /**
+        * Replaces the contents of the tree with the tree constructed
+        *   from input_array and configures the offsets.
+        *   Like Tree, the width of the first element is not counted
+        *   in the longest width.
+        * @param - int array.
+        * @return - none.
+        * @post - the tree holds the nodes of input_array.
+        **/
+        public void build( int[] input_array )
+        {
+            if( key.length < input_array.length )
+            {
+                allocate( input_array.length );
+            }
+
+            long start = Stats.enabled ? System.nanoTime() : 0;
+
+            size = 0;
+            longest_width = 0;
+
+            for( int index = 0; index < input_array.length; ++index )
+            {
+                add( input_array[ index ] );
+
+                if( index > 0 && longest_width < labels[ index ].length() )
+                {
+                    longest_width = labels[ index ].length();
+                }
+            }
+
+            if( Stats.enabled )
+            {
+                Stats.lap( Stats.BUILD, start );
+            }
+
+            if( size > 0 )
+            {
+                layout.layout( 0, size, left_link, right_link, offset );
+            }
+        }
+
+
+        /**
+        * Returns the number of nodes in the tree.
+        * @param - none.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        public int size()
+        {
+            return size;
+        }
+
+
+        /**
+        * Returns the offset of the node that was
+        *   added by input_array[ index ].
+        * @param - int.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        public int getOffset( int index )
+        {
+            return offset[ index ];
+        }
+
+        private void allocate( int capacity )
+        {
+            key = Arrays.copyOf( key == null ? new int[0] : key, capacity );
+            left_link = Arrays.copyOf( left_link == null ? new int[0] : left_link, capacity );
+            right_link = Arrays.copyOf( right_link == null ? new int[0] : right_link, capacity );
+            offset = Arrays.copyOf( offset == null ? new int[0] : offset, capacity );
+            labels = new String[ capacity ];
+        }
+
+        private void add( int input_data )
+        {
+            int node = size++;
+
+            key[ node ] = input_data;
+            labels[ node ] = label( input_data );
+            left_link[ node ] = NONE;
+            right_link[ node ] = NONE;
+            offset[ node ] = 0;
+
+            if( node > 0 )
+            {
+                int parent = 0;
+
+                while( true )
+                {
+                    int[] links = input_data < key[ parent ] ? left_link : right_link;
+
+                    if( links[ parent ] == NONE )
+                    {
+                        links[ parent ] = node;
+                        break;
+                    }
+
+                    parent = links[ parent ];
+                }
+            }
+        }
+
+
+        /**
+        * Returns the printed form of value, the labels of small
+        *   values are kept so they are only made once.
+        * @param - int.
+        * @return - String.
+        * @post - the label of a small value is kept.
+        **/
+        private static String label( int value )
+        {
+            if( value < 0 || value >= small_labels.length )
+            {
+                return Integer.toString( value );
+            }
+
+            String return_label = small_labels[ value ];
+
+            if( return_label == null )
+            {
+                return_label = Integer.toString( value );
+                small_labels[ value ] = return_label;
+            }
+
+            return return_label;
+        }
+
+        /**
+         * This method renders the tree's contents into an ascii graphic form.
+         * @param - none.
+         * @return - String.
+         * @post - The tree is not altered by this method.
+         **/
+        public String toString()
+        {
+            return toString( false );
+        }
+
+
+        /**
+         * This method renders the tree's contents into an ascii graphic form,
+         *   the same as Tree.toString( boolean ).
+         *   The graphical link can be set to be wider
+         * @param - boolean.
+         * @return - String.
+         * @post - The tree is not altered by this method.
+         **/
+        public String toString( boolean wide_link )
+        {
+            return render( wide_link ).toString();
+        }
+
+
+        /**
+         * This method renders the tree's contents into the tree's canvas,
+         *   which is reused by the next render.
+         * @param - boolean.
+         * @return - TreeCanvas.
+         * @post - The tree is not altered by this method.
+         **/
+        public TreeCanvas render( boolean wide_link )
+        {
+            canvas.collect_levels( size > 0 ? 0 : NONE, size, left_link, right_link );
+            canvas.render( offset, left_link, right_link, labels, longest_width, wide_link );
+
+            return canvas;
+        }
+    }
+
+    /**
+    * A class that lays out a binary tree in linear time, giving the same
+    *  offsets the collision passes of the original layout gave.
+    *  The nodes are indices into link arrays, a missing link is -1.
+    *
+    *  Every node places its children at the same distance on each side,
+    *  1 + spread. When a node has two children the spread is the least
+    *  that keeps every level below the children at least 2 apart, which
+    *  is found by walking the right contour of the left child and the
+    *  left contour of the right child together, in the style of
+    *  Reingold-Tilford. A contour that ends before the other one is
+    *  threaded to the node at the next level of the other one, so each
+    *  walk only goes as deep as the shorter child and the whole layout
+    *  is O(n). The offsets are then the sums of the child distances,
+    *  moved so the least offset is 1.
+    *
+    *  The layout is kept after layout(), so when a leaf is added only
+    *  the nodes on its path need to be placed again with update(), or
+    *  after a rotation the nodes above it with rotate(), and
+    *  offsets() sums the distances again when they are needed.
+    */
+    static class ContourLayout
+    {
+        private static final int NONE = -1;
+
+        private int[] left_link, right_link; // the links of the tree being laid out
+        private int[] spread, height, order, stack;
+        private int[] thread_left, thread_right, thread_left_offset, thread_right_offset;
+        private int[] left_threaded, right_threaded; // the extreme each node threaded
+        private int[] extreme_left, extreme_right, extreme_left_offset, extreme_right_offset;
+        private int walk_node, walk_offset; // the result of next_left() and next_right()
+        private long contour_steps, spread_nodes, spread_total; // counted for Stats
+
+
+        /**
+         * Constructor for a layout with room for input_capacity
+         *   nodes before the arrays grow.
+         * @param - int.
+         * @post - the layout arrays are allocated.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory.
+         **/ 
+        public ContourLayout( int input_capacity )
+        {
+            allocate( Math.max( 1, input_capacity ) );
+        }
+
+        private void allocate( int capacity )
+        { // grown arrays keep their contents so a kept layout can be updated
+            spread = grow( spread, capacity );
+            height = grow( height, capacity );
+            order = grow( order, capacity );
+            stack = grow( stack, capacity );
+            thread_left = grow( thread_left, capacity );
+            thread_right = grow( thread_right, capacity );
+            thread_left_offset = grow( thread_left_offset, capacity );
+            thread_right_offset = grow( thread_right_offset, capacity );
+            left_threaded = grow( left_threaded, capacity );
+            right_threaded = grow( right_threaded, capacity );
+            extreme_left = grow( extreme_left, capacity );
+            extreme_right = grow( extreme_right, capacity );
+            extreme_left_offset = grow( extreme_left_offset, capacity );
+            extreme_right_offset = grow( extreme_right_offset, capacity );
+        }
+
+        private static int[] grow( int[] array, int capacity )
+        {
+            return array == null ? new int[ capacity ] : Arrays.copyOf( array, capacity );
+        }
+
+
+        /**
+        * Lays out the tree from root, whose nodes are all less than
+        *   node_count, and writes the offset of each node into offset.
+        * @param - int, int, int array, int array, int array.
+        * @return - none.
+        * @post - the offsets of every node of the tree are set.
+        **/
+        public void layout( int root, int node_count, int[] input_left_link, int[] input_right_link, int[] offset )
+        {
+            if( spread.length < node_count )
+            {
+                allocate( node_count );
+            }
+
+            Stats.LayoutEvent event = Stats.events ? new Stats.LayoutEvent() : null;
+            long start = Stats.enabled ? System.nanoTime() : 0;
+
+            if( event != null )
+            {
+                event.begin();
+            }
+            left_link = input_left_link;
+            right_link = input_right_link;
+
+            int count = preorder( root );
+
+            for( int index = count - 1; index >= 0; --index )
+            { // children are placed before their parents
+                place( order[ index ] );
+            }
+
+            resolve( count, offset );
+
+            left_link = null;
+            right_link = null;
+            report( count, start, event );
+        }
+
+
+        /**
+        * Places the nodes of path again after a leaf was added at the end
+        *   of it. path holds the nodes from the root to the new leaf, the
+        *   rest of the tree must be laid out already. The threads that the
+        *   nodes of the path set are removed first, because they may not
+        *   be at the bottom of a contour any more.
+        * @param - int array, int, int, int array, int array.
+        * @return - none.
+        * @post - the layout of the nodes of path is changed.
+        **/
+        public void update( int[] path, int path_length, int node_count, int[] input_left_link, int[] input_right_link )
+        {
+            Stats.LayoutEvent event = Stats.events ? new Stats.LayoutEvent() : null;
+            long start = Stats.enabled ? System.nanoTime() : 0;
+
+            if( event != null )
+            {
+                event.begin();
+            }
+
+            if( spread.length < node_count )
+            {
+                allocate( Math.max( node_count, 2 * spread.length ) );
+            }
+
+            place_path( path, path_length, path_length - 1, input_left_link, input_right_link );
+            report( path_length, start, event );
+        }
+
+
+        /**
+        * Places the nodes of path again after a rotation. path holds the
+        *   nodes from the root to the lower of the two rotated nodes, the
+        *   subtrees below them were moved whole, so the rest of the tree
+        *   keeps its layout. Every node of the path had its children or
+        *   its subtree changed, so all of their threads are removed.
+        * @param - int array, int, int array, int array.
+        * @return - none.
+        * @post - the layout of the nodes of path is changed.
+        **/
+        public void rotate( int[] path, int path_length, int[] input_left_link, int[] input_right_link )
+        {
+            Stats.LayoutEvent event = Stats.events ? new Stats.LayoutEvent() : null;
+            long start = Stats.enabled ? System.nanoTime() : 0;
+
+            if( event != null )
+            {
+                event.begin();
+            }
+
+            place_path( path, path_length, path_length, input_left_link, input_right_link );
+            report( path_length, start, event );
+        }
+
+
+        /**
+        * Removes the threads set by the first threaded_length nodes of
+        *   path, then places the nodes of path from the last to the root.
+        * @param - int array, int, int, int array, int array.
+        * @return - none.
+        * @post - the layout of the nodes of path is changed.
+        **/
+        private void place_path( int[] path, int path_length, int threaded_length, int[] input_left_link,
+            int[] input_right_link )
+        {
+            left_link = input_left_link;
+            right_link = input_right_link;
+
+            for( int index = 0; index < threaded_length; ++index )
+            {
+                int node = path[ index ];
+
+                if( left_threaded[ node ] != NONE )
+                {
+                    thread_left[ left_threaded[ node ] ] = NONE;
+                }
+
+                if( right_threaded[ node ] != NONE )
+                {
+                    thread_right[ right_threaded[ node ] ] = NONE;
+                }
+            }
+
+            for( int index = path_length - 1; index >= 0; --index )
+            {
+                place( path[ index ] );
+            }
+
+            left_link = null;
+            right_link = null;
+        }
+
+
+        /**
+        * Adds the counters of the last layout or update to Stats when
+        *   it is enabled, and ends its event.
+        * @param - int, long, Stats.LayoutEvent.
+        * @return - none.
+        * @post - the counters are cleared.
+        **/
+        private void report( int placed, long start, Stats.LayoutEvent event )
+        {
+            if( Stats.enabled )
+            {
+                Stats.record_layout( placed, contour_steps, spread_nodes, spread_total, System.nanoTime() - start );
+            }
+
+            if( event != null )
+            {
+                event.nodes = placed;
+                event.contour_steps = contour_steps;
+                event.commit();
+            }
+
+            contour_steps = 0;
+            spread_nodes = 0;
+            spread_total = 0;
+        }
+
+
+        /**
+        * Writes the offset of each node of the laid out tree from
+        *   root into offset.
+        * @param - int, int array, int array, int array.
+        * @return - none.
+        * @post - the offsets of every node of the tree are set.
+        **/
+        public void offsets( int root, int[] input_left_link, int[] input_right_link, int[] offset )
+        {
+            left_link = input_left_link;
+            right_link = input_right_link;
+
+            resolve( preorder( root ), offset );
+
+            left_link = null;
+            right_link = null;
+        }
+
+
+        /**
+        * Fills order with the nodes from root in preorder.
+        * @param - int.
+        * @return - int, the number of nodes.
+        * @post - order is changed.
+        **/
+        private int preorder( int root )
+        {
+            int count = 0;
+            int top = 0;
+
+            stack[ top++ ] = root;
+
+            while( top > 0 )
+            {
+                int node = stack[ --top ];
+                order[ count++ ] = node;
+
+                if( right_link[ node ] != NONE )
+                {
+                    stack[ top++ ] = right_link[ node ];
+                }
+
+                if( left_link[ node ] != NONE )
+                {
+                    stack[ top++ ] = left_link[ node ];
+                }
+            }
+
+            return count;
+        }
+
+
+        /**
+        * Sets the spread, height, extremes and threads of node from
+        *   the children, which must already be placed.
+        * @param - int.
+        * @return - none.
+        * @post - the layout of node is set.
+        **/
+        private void place( int node )
+        {
+            int left = left_link[ node ], right = right_link[ node ];
+
+            thread_left[ node ] = NONE;
+            thread_right[ node ] = NONE;
+            left_threaded[ node ] = NONE;
+            right_threaded[ node ] = NONE;
+            spread[ node ] = 0;
+
+            if( left == NONE && right == NONE )
+            {
+                height[ node ] = 1;
+                extreme_left[ node ] = node;
+                extreme_right[ node ] = node;
+                extreme_left_offset[ node ] = 0;
+                extreme_right_offset[ node ] = 0;
+            }
+            else if( right == NONE )
+            {
+                height[ node ] = 1 + height[ left ];
+                extreme_left[ node ] = extreme_left[ left ];
+                extreme_right[ node ] = extreme_right[ left ];
+                extreme_left_offset[ node ] = extreme_left_offset[ left ] - 1;
+                extreme_right_offset[ node ] = extreme_right_offset[ left ] - 1;
+            }
+            else if( left == NONE )
+            {
+                height[ node ] = 1 + height[ right ];
+                extreme_left[ node ] = extreme_left[ right ];
+                extreme_right[ node ] = extreme_right[ right ];
+                extreme_left_offset[ node ] = extreme_left_offset[ right ] + 1;
+                extreme_right_offset[ node ] = extreme_right_offset[ right ] + 1;
+            }
+            else
+            {
+                separate( node, left, right );
+
+                int distance = 1 + spread[ node ];
+
+                height[ node ] = 1 + Math.max( height[ left ], height[ right ] );
+
+                if( height[ left ] >= height[ right ] )
+                {
+                    extreme_left[ node ] = extreme_left[ left ];
+                    extreme_left_offset[ node ] = extreme_left_offset[ left ] - distance;
+                }
+                else
+                {
+                    extreme_left[ node ] = extreme_left[ right ];
+                    extreme_left_offset[ node ] = extreme_left_offset[ right ] + distance;
+                }
+
+                if( height[ right ] >= height[ left ] )
+                {
+                    extreme_right[ node ] = extreme_right[ right ];
+                    extreme_right_offset[ node ] = extreme_right_offset[ right ] + distance;
+                }
+                else
+                {
+                    extreme_right[ node ] = extreme_right[ left ];
+                    extreme_right_offset[ node ] = extreme_right_offset[ left ] - distance;
+                }
+            }
+        }
+
+
+        /**
+        * Returns the spread a node with children at -1 and +1 needs for
+        *   one level below them, whose furthest right left node is at
+        *   left_offset and furthest left right node is at right_offset,
+        *   so the two are 2 apart. This is the one spread rule of the
+        *   program, ShapeCache and TreeDistribution spread by it too.
+        * @param - int, int.
+        * @return - int, 0 or more when the level already has room.
+        * @post - class values are unchanged.
+        **/
+        public static int level_spread( int left_offset, int right_offset )
+        {
+            return Math.floorDiv( left_offset - right_offset + 1, 2 );
+        }
+
+
+        /**
+        * Finds the spread of a node with two children and threads the
+        *   shorter outer contour to the longer one.
+        *   Each level below the children needs level_spread(). The
+        *   levels of the children themselves are not compared, the
+        *   same as the original collision passes.
+        * @param - int, int, int.
+        * @return - none.
+        * @post - the spread of node and the threads of the extremes are set.
+        **/
+        private void separate( int node, int left, int right )
+        {
+            int inner_left = left, inner_right = right;
+            int left_offset = 0, right_offset = 0; // relative to left and right
+            int node_spread = 0;
+
+            while( true )
+            {
+                next_right( inner_left );
+                int next_left_node = walk_node, next_left_offset = left_offset + walk_offset;
+
+                next_left( inner_right );
+                int next_right_node = walk_node, next_right_offset = right_offset + walk_offset;
+
+                if( next_left_node == NONE || next_right_node == NONE )
+                {
+                    int distance = 1 + node_spread;
+                    spread[ node ] = node_spread;
+
+                    if( node_spread > 0 )
+                    {
+                        ++spread_nodes;
+                        spread_total += node_spread;
+                    }
+
+                    if( next_right_node != NONE )
+                    { // the left child is shorter
+                        int extreme = extreme_left[ left ];
+
+                        thread_left[ extreme ] = next_right_node;
+                        left_threaded[ node ] = extreme;
+                        thread_left_offset[ extreme ] = ( distance + next_right_offset ) -
+                            ( extreme_left_offset[ left ] - distance );
+                    }
+                    else if( next_left_node != NONE )
+                    { // the right child is shorter
+                        int extreme = extreme_right[ right ];
+
+                        thread_right[ extreme ] = next_left_node;
+                        right_threaded[ node ] = extreme;
+                        thread_right_offset[ extreme ] = ( next_left_offset - distance ) -
+                            ( extreme_right_offset[ right ] + distance );
+                    }
+
+                    return;
+                }
+
+                inner_left = next_left_node;
+                left_offset = next_left_offset;
+                inner_right = next_right_node;
+                right_offset = next_right_offset;
+                ++contour_steps;
+
+                node_spread = Math.max( node_spread, level_spread( left_offset, right_offset ) );
+            }
+        }
+
+
+        /**
+        * Sets walk_node and walk_offset to the next node down the left
+        *   contour from node and its offset from node.
+        * @param - int.
+        * @return - none.
+        * @post - walk_node and walk_offset are changed.
+        **/
+        private void next_left( int node )
+        {
+            if( left_link[ node ] != NONE )
+            {
+                walk_node = left_link[ node ];
+                walk_offset = -1 - spread[ node ];
+            }
+            else if( right_link[ node ] != NONE )
+            {
+                walk_node = right_link[ node ];
+                walk_offset = 1 + spread[ node ];
+            }
+            else
+            {
+                walk_node = thread_left[ node ];
+                walk_offset = thread_left_offset[ node ];
+            }
+        }
+
+
+        /**
+        * Sets walk_node and walk_offset to the next node down the right
+        *   contour from node and its offset from node.
+        * @param - int.
+        * @return - none.
+        * @post - walk_node and walk_offset are changed.
+        **/
+        private void next_right( int node )
+        {
+            if( right_link[ node ] != NONE )
+            {
+                walk_node = right_link[ node ];
+                walk_offset = 1 + spread[ node ];
+            }
+            else if( left_link[ node ] != NONE )
+            {
+                walk_node = left_link[ node ];
+                walk_offset = -1 - spread[ node ];
+            }
+            else
+            {
+                walk_node = thread_right[ node ];
+                walk_offset = thread_right_offset[ node ];
+            }
+        }
+
+
+        /**
+        * Sets the offset of every node from the spreads, with the root
+        *   at 0, then moves them all so the least offset is 1.
+        * @param - int, int array.
+        * @return - none.
+        * @post - the offsets of the count nodes in order are set.
+        **/
+        private void resolve( int count, int[] offset )
+        {
+            int least_offset = 0;
+
+            offset[ order[0] ] = 0;
+
+            for( int index = 0; index < count; ++index )
+            { // parents come before their children in preorder
+                int node = order[ index ];
+
+                if( left_link[ node ] != NONE )
+                {
+                    offset[ left_link[ node ] ] = offset[ node ] - 1 - spread[ node ];
+                }
+
+                if( right_link[ node ] != NONE )
+                {
+                    offset[ right_link[ node ] ] = offset[ node ] + 1 + spread[ node ];
+                }
+
+                least_offset = Math.min( least_offset, offset[ node ] );
+            }
+
+            for( int index = 0; index < count; ++index )
+            {
+                offset[ order[ index ] ] += 1 - least_offset;
+            }
+        }
+    }
+
+    /**
+    * A class that renders a laid out tree into a char array, in the
+    *  ascii form of Tree.toString().
+    *  The size of the picture is measured from the offsets first, then
+    *  the cells, gaps and links are copied into the array, which is
+    *  kept and reused for the next tree. A tree too large to hold as
+    *  one picture is streamed instead, a level at a time, or only a
+    *  window of its levels and offsets.
+    *  The nodes are indices into link, offset and label arrays, a
+    *  missing link is -1.
+    */
+    static class TreeCanvas
+    {
+        private static final int NONE = -1;
+
+        private char[] canvas;
+        private int[] level_order, level_end;
+        private int length, level_count;
+        private int column, clip_start, clip_end; // the column drawn next and the columns kept
+        private boolean measuring, clipping;
+
+
+        /**
+         * Constructor for an empty canvas with room for
+         *   input_capacity nodes before the arrays grow.
+         * @param - int.
+         * @post - an empty canvas is allocated.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory.
+         **/ 
+        public TreeCanvas( int input_capacity )
+        {
+            canvas = new char[ 256 ];
+            level_order = new int[ Math.max( 1, input_capacity ) ];
+            level_end = new int[ Math.max( 1, input_capacity ) ];
+            length = 0;
+            level_count = 0;
+            clipping = false;
+        }
+
+
+        /**
+        * Fills level_order with the nodes from root a level at a time
+        *   from left to right, level_end holds where each level ends.
+        * @param - int, int, int array, int array.
+        * @return - none.
+        * @post - the levels of the tree are kept for render().
+        **/
+        public void collect_levels( int root, int node_count, int[] left_link, int[] right_link )
+        {
+            if( level_order.length < node_count )
+            {
+                level_order = new int[ node_count ];
+                level_end = new int[ node_count ];
+            }
+
+            int tail = 0;
+            level_count = 0;
+
+            if( root != NONE )
+            {
+                level_order[ tail++ ] = root;
+            }
+
+            for( int head = 0; head < tail; )
+            {
+                int end = tail;
+
+                for( ; head < end; ++head )
+                {
+                    int node = level_order[ head ];
+
+                    if( left_link[ node ] != NONE )
+                    {
+                        level_order[ tail++ ] = left_link[ node ];
+                    }
+
+                    if( right_link[ node ] != NONE )
+                    {
+                        level_order[ tail++ ] = right_link[ node ];
+                    }
+                }
+
+                level_end[ level_count++ ] = end;
+            }
+        }
+
+
+        /**
+        * Renders the collected levels into the canvas, the same as the
+        *   String.format() based rendering: each offset step is
+        *   2 + longest_width characters, a label is centered in its
+        *   cell with the extra space on the left, and each link line is
+        *   right justified to the offset of its node.
+        * @param - int array, int array, int array, String array, int, boolean.
+        * @return - none.
+        * @post - the canvas holds the picture of the tree.
+        **/
+        public void render( int[] offset, int[] left_link, int[] right_link, String[] label,
+            int longest_width, boolean wide_link )
+        {
+            render( offset, left_link, right_link, label, null, longest_width, wide_link );
+        }
+
+
+        /**
+        * Renders the collected levels the same as render() with labels,
+        *   from the cell of each node, its label already padded and
+        *   centered for longest_width, see LabelDictionary.cell().
+        * @param - int array, int array, int array, char array array, int, boolean.
+        * @return - none.
+        * @post - the canvas holds the picture of the tree.
+        **/
+        public void render( int[] offset, int[] left_link, int[] right_link, char[][] cell,
+            int longest_width, boolean wide_link )
+        {
+            render( offset, left_link, right_link, null, cell, longest_width, wide_link );
+        }
+
+        private void render( int[] offset, int[] left_link, int[] right_link, String[] label, char[][] cell,
+            int longest_width, boolean wide_link )
+        {
+            clipping = false;
+            measuring = true;
+            length = 0;
+            draw( offset, left_link, right_link, label, cell, longest_width, wide_link );
+            fit( length );
+
+            measuring = false;
+            length = 0;
+            draw( offset, left_link, right_link, label, cell, longest_width, wide_link );
+        }
+
+
+        /**
+        * Writes the picture render() would make to sink a level at a
+        *   time, so only the lines of one level are held however large
+        *   the tree is. Only the levels from first_level up to but not
+        *   including end_level, counting from 1, and the offsets from
+        *   first_offset up to but not including end_offset are drawn, an
+        *   end of 0 draws to the last. The lines of the window are cut to
+        *   the columns of its offsets, the nodes outside it are skipped,
+        *   and the link lines between the levels of the window are drawn.
+        *   The whole window is the same as the whole picture. The nodes
+        *   are drawn from their cells, as the second render() draws them.
+        * @param - int array, int array, int array, char array array, int, boolean,
+        *   int, int, int, int, OutputSink.
+        * @return - none.
+        * @post - the window of the picture is buffered in sink, the canvas
+        *   holds its last level.
+        **/
+        public void stream( int[] offset, int[] left_link, int[] right_link, char[][] cell, int longest_width,
+            boolean wide_link, int first_level, int end_level, int first_offset, int end_offset, OutputSink sink )
+        {
+            int cell_width = 2 + longest_width;
+            int last_level = end_level == 0 ? level_count : Math.min( level_count, end_level - 1 );
+
+            clip_start = cell_width * ( first_offset - 1 );
+            clip_end = end_offset == 0 ? Integer.MAX_VALUE : cell_width * ( end_offset - 1 );
+            clipping = clip_start > 0 || end_offset > 0;
+
+            for( int level = first_level - 1; level < last_level; ++level )
+            {
+                int level_start = level == 0 ? 0 : level_end[ level - 1 ];
+                boolean links = level < last_level - 1;
+
+                measuring = true;
+                length = 0;
+                draw_level( level_start, level_end[ level ], links, offset, left_link, right_link, null, cell,
+                    longest_width, wide_link, first_offset, end_offset );
+                fit( length );
+
+                measuring = false;
+                length = 0;
+                draw_level( level_start, level_end[ level ], links, offset, left_link, right_link, null, cell,
+                    longest_width, wide_link, first_offset, end_offset );
+                sink.write( canvas, 0, length );
+            }
+
+            clipping = false;
+        }
+
+        private void fit( int capacity )
+        {
+            if( canvas.length < capacity )
+            {
+                canvas = new char[ Math.max( capacity, 2 * canvas.length ) ];
+            }
+        }
+
+        private void draw( int[] offset, int[] left_link, int[] right_link, String[] label, char[][] cell,
+            int longest_width, boolean wide_link )
+        {
+            for( int level = 0; level < level_count; ++level )
+            {
+                draw_level( level == 0 ? 0 : level_end[ level - 1 ], level_end[ level ], level < level_count - 1,
+                    offset, left_link, right_link, label, cell, longest_width, wide_link, 1, 0 );
+            }
+        }
+
+
+        /**
+        * Draws the nodes of level_order from level_start up to level_end
+        *   whose offsets are from first_offset up to end_offset, 0 for
+        *   any, and the link line below them if links is true. The nodes
+        *   are drawn from their cells when cell is not null, otherwise
+        *   from their labels. The lines are cut to the columns from
+        *   clip_start up to clip_end.
+        * @param - int, int, boolean, int array, int array, int array,
+        *   String array, char array array, int, boolean, int, int.
+        * @return - none.
+        * @post - the lines are added to the canvas, or measured.
+        **/
+        private void draw_level( int level_start, int level_end, boolean links, int[] offset, int[] left_link,
+            int[] right_link, String[] label, char[][] cell, int longest_width, boolean wide_link, int first_offset,
+            int end_offset )
+        {
+            int cell_width = 2 + longest_width;
+            int previus_offset = 0;
+
+            while( level_start < level_end && offset[ level_order[ level_start ] ] < first_offset )
+            { // the nodes of a level are in offset order
+                ++level_start;
+            }
+
+            while( end_offset > 0 && level_end > level_start && offset[ level_order[ level_end - 1 ] ] >= end_offset )
+            {
+                --level_end;
+            }
+
+            column = 0;
+
+            for( int index = level_start; index < level_end; ++index )
+            {
+                int node = level_order[ index ];
+
+                if( offset[ node ] - previus_offset > 1 )
+                {
+                    spaces( cell_width * ( offset[ node ] - previus_offset - 1 ) );
+                }
+
+                previus_offset = offset[ node ];
+
+                if( cell != null )
+                {
+                    put( cell[ node ] );
+                    continue;
+                }
+
+                String node_label = label[ node ];
+                int spacing_difference = longest_width - node_label.length();
+
+                put( '(' );
+                spaces( longest_width - spacing_difference / 2 - node_label.length() );
+                put( node_label );
+
+                if( spacing_difference > 1 )
+                {
+                    spaces( spacing_difference / 2 );
+                }
+
+                put( ')' );
+            }
+
+            if( links )
+            { // if the level isnt the last level    print the links
+                previus_offset = 0;
+                new_line();
+
+                if( wide_link )
+                {
+                    put( ' ' );
+                }
+
+                for( int index = level_start; index < level_end; ++index )
+                {
+                    int node = level_order[ index ];
+                    int left_width = wide_link ? ( left_link[ node ] == NONE && offset[ node ] == 1 ? 0 : 2 ) : 1;
+                    int right_width = wide_link ? 2 : 1;
+
+                    spaces( cell_width * ( offset[ node ] - previus_offset ) - left_width - longest_width - right_width );
+                    repeat( left_link[ node ] == NONE ? ' ' : '/', left_width );
+                    spaces( longest_width );
+                    repeat( right_link[ node ] == NONE ? ' ' : '\\', right_width );
+
+                    previus_offset = offset[ node ];
+                }
+
+                new_line();
+            }
+        }
+
+        private void new_line()
+        {
+            if( !measuring )
+            {
+                canvas[ length ] = '\n';
+            }
+
+            ++length;
+            column = 0;
+        }
+
+        private void put( char character )
+        {
+            if( !clipping || column >= clip_start && column < clip_end )
+            {
+                if( !measuring )
+                {
+                    canvas[ length ] = character;
+                }
+
+                ++length;
+            }
+
+            ++column;
+        }
+
+        private void put( String text )
+        {
+            if( !clipping )
+            {
+                if( !measuring )
+                {
+                    text.getChars( 0, text.length(), canvas, length );
+                }
+
+                length += text.length();
+                return;
+            }
+
+            int from = Math.max( column, clip_start ), to = Math.min( column + text.length(), clip_end );
+
+            if( from < to )
+            {
+                if( !measuring )
+                {
+                    text.getChars( from - column, to - column, canvas, length );
+                }
+
+                length += to - from;
+            }
+
+            column += text.length();
+        }
+
+        private void put( char[] text )
+        {
+            if( !clipping )
+            {
+                if( !measuring )
+                {
+                    System.arraycopy( text, 0, canvas, length, text.length );
+                }
+
+                length += text.length;
+                return;
+            }
+
+            int from = Math.max( column, clip_start ), to = Math.min( column + text.length, clip_end );
+
+            if( from < to )
+            {
+                if( !measuring )
+                {
+                    System.arraycopy( text, from - column, canvas, length, to - from );
+                }
+
+                length += to - from;
+            }
+
+            column += text.length;
+        }
+
+        private void repeat( char character, int count )
+        {
+            if( count > 0 && !clipping )
+            {
+                if( !measuring )
+                {
+                    Arrays.fill( canvas, length, length + count, character );
+                }
+
+                length += count;
+            }
+            else if( count > 0 )
+            {
+                int from = Math.max( column, clip_start ), to = Math.min( column + count, clip_end );
+
+                if( from < to )
+                {
+                    if( !measuring )
+                    {
+                        Arrays.fill( canvas, length, length + to - from, character );
+                    }
+
+                    length += to - from;
+                }
+
+                column += count;
+            }
+        }
+
+        private void spaces( int count )
+        {
+            repeat( ' ', count );
+        }
+
+
+        /**
+        * Returns the number of characters in the canvas.
+        * @param - none.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        public int length()
+        {
+            return length;
+        }
+
+
+        /**
+        * Returns the characters of the canvas, only the
+        *   first length() of them are the picture.
+        * @param - none.
+        * @return - char array.
+        * @post - class values are unchanged.
+        **/
+        public char[] canvas()
+        {
+            return canvas;
+        }
+
+
+        /**
+        * Returns the picture in the canvas.
+        * @param - none.
+        * @return - String.
+        * @post - class values are unchanged.
+        **/
+        public String toString()
+        {
+            return new String( canvas, 0, length );
+        }
+    }
+
+
+    /**
+    * A class that renders the trees of an enumeration from cached pieces.
+    *  Every subtree of an enumerated tree is one of the trees of its size,
+    *  so its layout is keyed by its size and rank: the cache keeps the
+    *  contours of the subtree (the least and greatest relative offset on
+    *  each level), the spread of its root and the layouts of its
+    *  children. A subtree that is not cached is put together from the
+    *  layouts of its children, the spread is found from their contours
+    *  the same way ContourLayout finds it. The layouts are kept in a
+    *  table for each size, indexed by rank, for the sizes whose shapes
+    *  all fit in max_entries. The layouts of larger subtrees, which are
+    *  rarely repeated, are put together each time.
+    *
+    *  Every cell of an enumerated tree but the root's is exactly
+    *  2 + width characters, so the text of a node can be copied to any
+    *  offset. A tree is drawn by filling its lines with spaces and
+    *  painting its nodes into them. Subtrees of PIECE_SIZE nodes or less
+    *  are painted from their text, kept for each first value they hold.
+    */
+    static class ShapeCache
+    {
+        /** the largest tree size rendered, the ranks of its subtrees fit in a long */
+        public static final int MAX_SIZE = TreeCount.LONG_LIMIT;
+
+        /** the number of layouts kept when none is given */
+        public static final int DEFAULT_ENTRIES = 1 << 16;
+
+        /** the largest subtree whose text is kept, a larger text costs more to build than copying it saves */
+        public static final int PIECE_SIZE = 4;
+
+        /** the index of the first shape of each size up to PIECE_SIZE, and the shape count after them */
+        private static final int[] TEXT_BASE = new int[ PIECE_SIZE + 2 ];
+
+        static
+        {
+            for( int size = 1; size < TEXT_BASE.length; ++size )
+            {
+                TEXT_BASE[ size ] = TEXT_BASE[ size - 1 ] + (int) TreeCount.count( size - 1 );
+            }
+        }
+
+        /**
+        * The cached layout of one subtree. Offsets are relative to the
+        *  root of the subtree. Two shapes are equal when their contours
+        *  are, the least and greatest offset of each level, which is how
+        *  TreeDistribution groups subtrees; the cache itself finds shapes
+        *  by rank and never compares them.
+        */
+        static class Shape
+        {
+            private int size, height, least_offset, distance, text_index;
+            private int[] least, greatest;
+            private Shape left, right;
+
+            public int hashCode()
+            {
+                int hash = height;
+
+                for( int level = 0; level < height; ++level )
+                {
+                    hash = 31 * ( 31 * hash + least[ level ] ) + greatest[ level ];
+                }
+
+                return hash;
+            }
+
+            public boolean equals( Object other )
+            {
+                if( !( other instanceof Shape ) || ( (Shape) other ).height != height )
+                {
+                    return false;
+                }
+
+                Shape shape = (Shape) other;
+
+                return Arrays.equals( least, 0, height, shape.least, 0, height ) &&
+                    Arrays.equals( greatest, 0, height, shape.greatest, 0, height );
+            }
+        }
+
+        /**
+        * The text of each level of a subtree, from the cell of its leftmost
+        *  node to the cell of its rightmost node (a wide link line starts
+        *  one character before it and ends one after). The link text of
+        *  the last level is all spaces.
+        */
+        private static class Text
+        {
+            private char[][] node_lines, link_lines;
+        }
+
+        private final Shape[][] shapes;
+        private final Text[] texts;
+        private long[] long_ranks = new long[ MAX_SIZE ];
+        private Shape[] scratch = new Shape[ MAX_SIZE ]; // the uncached layout of the subtree at each position
+        private char[] canvas;
+        private int length, cell_width, longest_width;
+        private boolean wide_link;
+        private int[] node_line_start = new int[0], link_line_start = new int[0];
+        private int last_level;
+        private long hits, misses, reported_hits, reported_misses;
+
+
+        /**
+         * Constructor for a cache of at most input_max_entries layouts,
+         *   all the shapes of each size up to the largest that fits.
+         * @param - int.
+         * @post - an empty cache is allocated.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory.
+         **/ 
+        public ShapeCache( int input_max_entries )
+        {
+            int cached_size = 0;
+
+            for( long entries = 1; cached_size < MAX_SIZE && entries + TreeCount.count( cached_size + 1 ) <= input_max_entries; )
+            {
+                entries += TreeCount.count( ++cached_size );
+            }
+
+            shapes = new Shape[ cached_size + 1 ][]; // a table is allocated when its size is first used
+
+            // one text for each small shape, first value, width below 4 and link width
+            texts = new Text[ TEXT_BASE[ PIECE_SIZE + 1 ] * ( MAX_SIZE + 1 ) * 8 ];
+            canvas = new char[ 256 ];
+            length = 0;
+            hits = 0;
+            misses = 0;
+        }
+
+
+        /**
+        * Renders the tree of sequence, which must be an array from an
+        *   enumeration of 1 to sequence.length, into the canvas. The text
+        *   is the same as IntTree.toString( input_wide_link ) of the sequence.
+        * @param - int array, boolean.
+        * @return - none.
+        * @post - the canvas holds the tree, the cache may hold new layouts.
+        * @exception IllegalArgumentException
+        *   Indicates the sequence is longer than MAX_SIZE.
+        **/
+        public void render( int[] sequence, boolean input_wide_link )
+        {
+            int size = sequence.length;
+
+            if( size > MAX_SIZE )
+            {
+                throw new IllegalArgumentException( "trees larger than " + MAX_SIZE + " are not cached" );
+            }
+
+            int root = sequence[0];
+
+            // like Tree, the first element is not counted in the longest width
+            longest_width = size < 2 ? 0 : digits( root == size ? size - 1 : size );
+            cell_width = 2 + longest_width;
+            wide_link = input_wide_link;
+            subtree_rank( sequence, 0, 1, size );
+
+            Shape left = root > 1 ? shape( sequence, 1, 1, root - 1 ) : null;
+            Shape right = root < size ? shape( sequence, root, root + 1, size ) : null;
+            Shape whole = combine( left, right, scratch( 0 ) );
+
+            int root_offset = 1 - whole.least_offset; // moves the least offset to 1
+
+            // every line ends at the last cell of its level, the lines are laid out first
+            if( node_line_start.length < whole.height )
+            {
+                node_line_start = new int[ whole.height ];
+                link_line_start = new int[ whole.height ];
+            }
+
+            last_level = whole.height - 1;
+            length = 0;
+
+            for( int level = 0; level <= last_level; ++level )
+            {
+                int line_end = ( whole.greatest[ level ] + root_offset ) * cell_width;
+
+                node_line_start[ level ] = length;
+                // the root's label may be wider than the others
+                length += level > 0 ? line_end : line_end + Math.max( 0, digits( root ) - longest_width );
+
+                if( level < last_level )
+                {
+                    link_line_start[ level ] = length + 1;
+                    length += 2 + line_end + ( wide_link ? 1 : 0 );
+                }
+            }
+
+            if( canvas.length < length )
+            {
+                canvas = new char[ Math.max( length, 2 * canvas.length ) ];
+            }
+
+            Arrays.fill( canvas, 0, length, ' ' );
+
+            for( int level = 0; level < last_level; ++level )
+            {
+                canvas[ link_line_start[ level ] - 1 ] = '\n';
+                canvas[ node_line_start[ level + 1 ] - 1 ] = '\n';
+            }
+
+            cell( canvas, node_line_start[0] + ( root_offset - 1 ) * cell_width, root, longest_width );
+            paint_links( whole, root_offset, 0 );
+
+            if( left != null )
+            {
+                paint( left, 1, root_offset - whole.distance, 1 );
+            }
+
+            if( right != null )
+            {
+                paint( right, root + 1, root_offset + whole.distance, 1 );
+            }
+        }
+
+
+        /**
+        * Paints piece, which holds the values from first_value, with its
+        *   root at offset on level into the canvas. A small piece is
+        *   copied from its text, a larger one paints its root and
+        *   then its children.
+        * @param - Shape, int, int, int.
+        * @return - none.
+        * @post - the canvas holds the piece.
+        **/
+        private void paint( Shape piece, int first_value, int offset, int level )
+        {
+            if( piece.size > PIECE_SIZE )
+            {
+                int left_size = piece.left == null ? 0 : piece.left.size;
+
+                cell( canvas, node_line_start[ level ] + ( offset - 1 ) * cell_width, first_value + left_size, longest_width );
+                paint_links( piece, offset, level );
+
+                if( piece.left != null )
+                {
+                    paint( piece.left, first_value, offset - piece.distance, level + 1 );
+                }
+
+                if( piece.right != null )
+                {
+                    paint( piece.right, first_value + left_size + 1, offset + piece.distance, level + 1 );
+                }
+
+                return;
+            }
+
+            Text text = text( piece, first_value );
+
+            for( int index = 0; index < piece.height; ++index, ++level )
+            {
+                int column = ( piece.least[ index ] + offset - 1 ) * cell_width;
+                char[] node_line = text.node_lines[ index ];
+
+                System.arraycopy( node_line, 0, canvas, node_line_start[ level ] + column, node_line.length );
+
+                if( level < last_level )
+                {
+                    char[] link_line = text.link_lines[ index ];
+                    // a wide link line starts a character early, before the first cell that is a space
+                    int skip = wide_link && column == 0 ? 1 : 0;
+
+                    System.arraycopy( link_line, skip, canvas, link_line_start[ level ] + column - ( wide_link ? 1 : 0 ) + skip,
+                        link_line.length - skip );
+                }
+            }
+        }
+
+
+        /**
+        * Paints the links below the root of piece, which is at offset on level.
+        * @param - Shape, int, int.
+        * @return - none.
+        * @post - the canvas holds the links.
+        **/
+        private void paint_links( Shape piece, int offset, int level )
+        {
+            if( level == last_level )
+            {
+                return;
+            }
+
+            int line_start = link_line_start[ level ];
+            int extra = wide_link ? 1 : 0; // a wide link is a character longer on the outside
+
+            if( piece.left != null )
+            {
+                int column = line_start + ( offset - 1 ) * cell_width;
+                Arrays.fill( canvas, column - extra, column + 1, '/' );
+            }
+
+            if( piece.right != null )
+            {
+                int column = line_start + offset * cell_width;
+                Arrays.fill( canvas, column - 1, column + extra, '\\' );
+            }
+        }
+
+
+        /**
+        * Returns the layout of the subtree at position of sequence that
+        *   holds first_value to last_value, from the cache or put
+        *   together from the layouts of its children.
+        * @param - int array, int, int, int.
+        * @return - Shape.
+        * @post - the layout is cached if its size is.
+        **/
+        private Shape shape( int[] sequence, int position, int first_value, int last_value )
+        {
+            int size = last_value - first_value + 1;
+            Shape[] table = null;
+
+            if( size < shapes.length )
+            {
+                if( shapes[ size ] == null )
+                {
+                    shapes[ size ] = new Shape[ (int) TreeCount.count( size ) ];
+                }
+
+                table = shapes[ size ];
+
+                if( table[ (int) long_ranks[ position ] ] != null )
+                {
+                    ++hits;
+                    return table[ (int) long_ranks[ position ] ];
+                }
+            }
+
+            ++misses;
+
+            int root = sequence[ position ];
+            Shape left = root > first_value ? shape( sequence, position + 1, first_value, root - 1 ) : null;
+            Shape right = root < last_value ? shape( sequence, position + 1 + root - first_value, root + 1, last_value ) : null;
+
+            Shape found = combine( left, right, table == null ? scratch( position ) : new Shape() );
+
+            if( size <= PIECE_SIZE )
+            {
+                found.text_index = TEXT_BASE[ size ] + (int) long_ranks[ position ];
+            }
+
+            if( table != null )
+            {
+                table[ (int) long_ranks[ position ] ] = found;
+            }
+
+            return found;
+        }
+
+
+        /**
+        * Returns the layout kept for the subtree at position of the
+        *   sequence being rendered when its size is not cached, position
+        *   0 for the whole tree. A subtree too large to cache is put
+        *   together for every tree, into the same layout each time.
+        * @param - int.
+        * @return - Shape.
+        * @post - the layout is allocated the first time.
+        **/
+        private Shape scratch( int position )
+        {
+            if( scratch[ position ] == null )
+            {
+                scratch[ position ] = new Shape();
+            }
+
+            return scratch[ position ];
+        }
+
+
+        /**
+        * Returns the rank of the subtree at position of sequence that
+        *   holds first_value to last_value, the same as rank() would give,
+        *   and keeps the rank of it and of each of its subtrees.
+        * @param - int array, int, int, int.
+        * @return - long.
+        * @post - long_ranks holds the ranks of the subtrees.
+        **/
+        private long subtree_rank( int[] sequence, int position, int first_value, int last_value )
+        {
+            int size = last_value - first_value + 1;
+
+            if( size < 1 )
+            {
+                return 0;
+            }
+
+            int root = sequence[ position ];
+            long left_rank = subtree_rank( sequence, position + 1, first_value, root - 1 );
+            long right_rank = subtree_rank( sequence, position + 1 + root - first_value, root + 1, last_value );
+
+            long_ranks[ position ] = TreeCount.root_start( size, root - first_value ) +
+                left_rank * TreeCount.count( last_value - root ) + right_rank;
+
+            return long_ranks[ position ];
+        }
+
+
+        /**
+        * Returns the layout of a node with the given children layouts,
+        *   the children are placed at 1 + spread on each side of it the
+        *   same as in ContourLayout, a missing child is null. The layout
+        *   is written into combined, whose contour arrays are reused when
+        *   they are long enough.
+        * @param - Shape, Shape, Shape.
+        * @return - Shape, combined.
+        * @post - combined holds the layout.
+        **/
+        static Shape combine( Shape left, Shape right, Shape combined )
+        {
+            int node_spread = 0;
+
+            if( left != null && right != null )
+            {
+                for( int level = 1; level < Math.min( left.height, right.height ); ++level )
+                {
+                    node_spread = Math.max( node_spread, ContourLayout.level_spread( left.greatest[ level ], right.least[ level ] ) );
+                }
+            }
+
+            int left_height = left == null ? 0 : left.height;
+            int right_height = right == null ? 0 : right.height;
+
+            combined.left = left;
+            combined.right = right;
+            combined.size = 1 + ( left == null ? 0 : left.size ) + ( right == null ? 0 : right.size );
+            combined.distance = 1 + node_spread;
+            combined.height = 1 + Math.max( left_height, right_height );
+            combined.least_offset = 0;
+
+            if( combined.least == null || combined.least.length < combined.height )
+            {
+                combined.least = new int[ combined.height ];
+                combined.greatest = new int[ combined.height ];
+            }
+
+            combined.least[0] = 0;
+            combined.greatest[0] = 0;
+
+            for( int level = 1; level < combined.height; ++level )
+            {
+                combined.least[ level ] = level <= left_height ?
+                    left.least[ level - 1 ] - combined.distance : right.least[ level - 1 ] + combined.distance;
+                combined.greatest[ level ] = level <= right_height ?
+                    right.greatest[ level - 1 ] + combined.distance : left.greatest[ level - 1 ] - combined.distance;
+                combined.least_offset = Math.min( combined.least_offset, combined.least[ level ] );
+            }
+
+            return combined;
+        }
+
+
+        /**
+        * Returns the text of piece when it holds the values from
+        *   first_value, putting it together from the text of its
+        *   children the first time.
+        * @param - Shape, int.
+        * @return - Text.
+        * @post - the text is kept.
+        **/
+        private Text text( Shape piece, int first_value )
+        {
+            int index = ( ( piece.text_index * ( MAX_SIZE + 1 ) + first_value ) * 4 + longest_width ) * 2 + ( wide_link ? 1 : 0 );
+
+            if( texts[ index ] != null )
+            {
+                return texts[ index ];
+            }
+
+            int link_width = wide_link ? 2 : 1;
+            int left_size = piece.left == null ? 0 : piece.left.size;
+            Text text = new Text();
+
+            text.node_lines = new char[ piece.height ][];
+            text.link_lines = new char[ piece.height ][];
+
+            for( int level = 0; level < piece.height; ++level )
+            {
+                int span = ( piece.greatest[ level ] - piece.least[ level ] + 1 ) * cell_width;
+
+                text.node_lines[ level ] = new char[ span ];
+                text.link_lines[ level ] = new char[ span + 2 * ( link_width - 1 ) ];
+                Arrays.fill( text.node_lines[ level ], ' ' );
+                Arrays.fill( text.link_lines[ level ], ' ' );
+            }
+
+            cell( text.node_lines[0], 0, first_value + left_size, longest_width );
+            Arrays.fill( text.link_lines[0], 0, link_width, piece.left != null ? '/' : ' ' );
+            Arrays.fill( text.link_lines[0], link_width + longest_width, 2 * link_width + longest_width,
+                piece.right != null ? '\\' : ' ' );
+
+            if( piece.left != null )
+            {
+                copy_text( text, piece, text( piece.left, first_value ), piece.left, -piece.distance );
+            }
+
+            if( piece.right != null )
+            {
+                copy_text( text, piece, text( piece.right, first_value + left_size + 1 ), piece.right, piece.distance );
+            }
+
+            texts[ index ] = text;
+
+            return text;
+        }
+
+
+        /**
+        * Copies the text of a child of piece, whose root is at
+        *   child_offset from the root of piece, into the text of piece.
+        * @param - Text, Shape, Text, Shape, int.
+        * @return - none.
+        * @post - text holds the text of the child.
+        **/
+        private void copy_text( Text text, Shape piece, Text child_text, Shape child, int child_offset )
+        {
+            for( int level = 1; level <= child.height; ++level )
+            {
+                int column = ( child.least[ level - 1 ] + child_offset - piece.least[ level ] ) * cell_width;
+
+                System.arraycopy( child_text.node_lines[ level - 1 ], 0, text.node_lines[ level ], column,
+                    child_text.node_lines[ level - 1 ].length );
+                System.arraycopy( child_text.link_lines[ level - 1 ], 0, text.link_lines[ level ], column,
+                    child_text.link_lines[ level - 1 ].length );
+            }
+        }
+
+
+        /**
+        * Writes the cell of value at column of line the same way
+        *   TreeCanvas does, and returns the column after it.
+        * @param - char array, int, int, int.
+        * @return - int.
+        * @post - the cell is written to line.
+        **/
+        private static int cell( char[] line, int column, int value, int longest_width )
+        {
+            int label_width = digits( value );
+            int spacing_difference = longest_width - label_width;
+
+            line[ column++ ] = '(';
+
+            for( int count = longest_width - spacing_difference / 2 - label_width; count > 0; --count )
+            {
+                line[ column++ ] = ' ';
+            }
+
+            for( int index = label_width - 1, remaining = value; index >= 0; --index, remaining /= 10 )
+            {
+                line[ column + index ] = (char) ( '0' + remaining % 10 );
+            }
+
+            column += label_width;
+
+            for( int count = spacing_difference > 1 ? spacing_difference / 2 : 0; count > 0; --count )
+            {
+                line[ column++ ] = ' ';
+            }
+
+            line[ column++ ] = ')';
+
+            return column;
+        }
+
+        private static int digits( int value )
+        {
+            int count = 1;
+
+            for( ; value >= 10; value /= 10 )
+            {
+                ++count;
+            }
+
+            return count;
+        }
+
+
+        /**
+        * Returns the characters of the canvas, only the
+        *   first length() of them are the picture.
+        * @param - none.
+        * @return - char array.
+        * @post - class values are unchanged.
+        **/
+        public char[] canvas()
+        {
+            return canvas;
+        }
+
+
+        /**
+        * Returns the number of characters in the canvas.
+        * @param - none.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        public int length()
+        {
+            return length;
+        }
+
+
+        /**
+        * Returns the number of pieces found in the cache and the number
+        *   put together, since the cache was made.
+        * @param - none.
+        * @return - long array, the hits then the misses.
+        * @post - class values are unchanged.
+        **/
+        public long[] statistics()
+        {
+            return new long[] {hits, misses};
+        }
+
+
+        /**
+        * Adds the hits and misses since the last report to Stats
+        *   when it is enabled.
+        * @param - none.
+        * @return - none.
+        * @post - the hits and misses are marked as reported.
+        **/
+        public void report()
+        {
+            if( Stats.enabled )
+            {
+                Stats.record_cache( hits - reported_hits, misses - reported_misses );
+            }
+
+            reported_hits = hits;
+            reported_misses = misses;
+        }
+
+
+        /**
+        * Returns the picture in the canvas.
+        * @param - none.
+        * @return - String.
+        * @post - class values are unchanged.
+        **/
+        public String toString()
+        {
+            return new String( canvas, 0, length );
+        }
+    }
+
+
+    /**
+    * A class that buffers the printed trees and writes them to standard
+    *  output or to a file through a channel, a buffer at a time.
+    *  Characters are copied straight into the byte buffer when they are
+    *  ascii and encoded with the default charset when they are not.
+    *  The buffer is written when it is full and when flush() is called,
+    *  nothing is written per line the way System.out does.
+    *  Channel errors are thrown as UncheckedIOException.
+    */
+    static class OutputSink implements Closeable, Flushable
+    {
+        /** the size of the buffer, in bytes, when none is given */
+        public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+        private static final String GROUPED_SAMPLE = String.format( "%,d", 1234567 );
+        private static final boolean PLAIN_GROUPING = GROUPED_SAMPLE.length() == 9 &&
+            GROUPED_SAMPLE.startsWith( "1" ) && GROUPED_SAMPLE.charAt( 1 ) < 0x80 &&
+            GROUPED_SAMPLE.charAt( 5 ) == GROUPED_SAMPLE.charAt( 1 );
+
+        private final WritableByteChannel channel;
+        private final boolean close_channel;
+        private final Charset charset;
+        private final byte[] buffer;
+        private final ByteBuffer buffer_view;
+        private final byte[] digits;
+        private int position;
+        private long bytes_written;
+
+
+        /**
+         * Constructor for a sink that writes to input_channel
+         *   through a buffer of input_buffer_size bytes.
+         * @param - WritableByteChannel, boolean, int.
+         * @post - 
+         *   the sink is allocated, the channel is closed with the
+         *   sink only if input_close_channel is true.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory.
+         **/ 
+        public OutputSink( WritableByteChannel input_channel, boolean input_close_channel, int input_buffer_size )
+        {
+            channel = input_channel;
+            close_channel = input_close_channel;
+            charset = Charset.defaultCharset();
+            buffer = new byte[ Math.max( 64, input_buffer_size ) ];
+            buffer_view = ByteBuffer.wrap( buffer );
+            digits = new byte[ 32 ];
+            position = 0;
+            bytes_written = 0;
+        }
+
+
+        /**
+        * Returns a sink that writes to standard output, which is not
+        *   closed with the sink. System.out is flushed first so nothing
+        *   already printed comes after the sink's output.
+        * @param - none.
+        * @return - OutputSink.
+        * @post - System.out is flushed.
+        **/
+        public static OutputSink standard_output()
+        {
+            System.out.flush();
+
+            return new OutputSink( Channels.newChannel( new FileOutputStream( FileDescriptor.out ) ),
+                false, DEFAULT_BUFFER_SIZE );
+        }
+
+
+        /**
+        * Returns a sink that writes to the file at input_path through
+        *   a FileChannel, the file is created or emptied.
+        * @param - String.
+        * @return - OutputSink.
+        * @post - the file is opened.
+        * @exception UncheckedIOException
+        *   Indicates the file could not be opened.
+        **/
+        public static OutputSink file( String input_path )
+        {
+            try
+            {
+                return new OutputSink( FileChannel.open( Paths.get( input_path ), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ), true, DEFAULT_BUFFER_SIZE );
+            }
+            catch( IOException exception )
+            {
+                throw new UncheckedIOException( exception );
+            }
+        }
+
+
+        /**
+        * Writes length characters of chars starting at offset.
+        * @param - char array, int, int.
+        * @return - OutputSink, this sink.
+        * @post - the characters are buffered.
+        **/
+        public OutputSink write( char[] chars, int offset, int length )
+        {
+            int end = offset + length;
+
+            for( int index = offset; index < end; ++index )
+            {
+                char character = chars[ index ];
+
+                if( character >= 0x80 )
+                { // not ascii, the rest is encoded
+                    write_bytes( new String( chars, index, end - index ).getBytes( charset ) );
+                    break;
+                }
+
+                if( position == buffer.length )
+                {
+                    drain();
+                }
+
+                buffer[ position++ ] = (byte) character;
+            }
+
+            return this;
+        }
+
+
+        /**
+        * Writes the characters of text.
+        * @param - CharSequence.
+        * @return - OutputSink, this sink.
+        * @post - the characters are buffered.
+        **/
+        public OutputSink write( CharSequence text )
+        {
+            int length = text.length();
+
+            for( int index = 0; index < length; ++index )
+            {
+                char character = text.charAt( index );
+
+                if( character >= 0x80 )
+                {
+                    write_bytes( text.subSequence( index, length ).toString().getBytes( charset ) );
+                    break;
+                }
+
+                if( position == buffer.length )
+                {
+                    drain();
+                }
+
+                buffer[ position++ ] = (byte) character;
+            }
+
+            return this;
+        }
+
+
+        /**
+        * Writes the picture in canvas.
+        * @param - TreeCanvas.
+        * @return - OutputSink, this sink.
+        * @post - the picture is buffered.
+        **/
+        public OutputSink write( TreeCanvas canvas )
+        {
+            return write( canvas.canvas(), 0, canvas.length() );
+        }
+
+
+        /**
+        * Writes value in decimal, grouped by thousands the way %,d
+        *   formats it when grouped is true.
+        * @param - long, boolean.
+        * @return - OutputSink, this sink.
+        * @post - the digits are buffered.
+        **/
+        public OutputSink write( long value, boolean grouped )
+        {
+            if( grouped && !PLAIN_GROUPING )
+            { // the locale does not group by threes with one ascii character
+                return write( String.format( "%,d", value ) );
+            }
+
+            if( value == Long.MIN_VALUE )
+            {
+                return write( Long.toString( value ) );
+            }
+
+            int count = 0;
+            long remaining = Math.abs( value );
+
+            do
+            {
+                if( grouped && count % 4 == 3 )
+                {
+                    digits[ count++ ] = (byte) GROUPED_SAMPLE.charAt( 1 );
+                }
+
+                digits[ count++ ] = (byte) ( '0' + remaining % 10 );
+                remaining /= 10;
+            }
+            while( remaining > 0 );
+
+            if( value < 0 )
+            {
+                digits[ count++ ] = '-';
+            }
+
+            while( count > 0 )
+            {
+                if( position == buffer.length )
+                {
+                    drain();
+                }
+
+                buffer[ position++ ] = digits[ --count ];
+            }
+
+            return this;
+        }
+
+
+        /**
+        * Writes the arguments formatted by String.format().
+        * @param - String, Object array.
+        * @return - OutputSink, this sink.
+        * @post - the formatted text is buffered.
+        **/
+        public OutputSink printf( String format, Object... args )
+        {
+            return write( String.format( format, args ) );
+        }
+
+        private void write_bytes( byte[] bytes )
+        {
+            write( bytes, 0, bytes.length );
+        }
+
+
+        /**
+        * Writes length bytes of bytes starting at offset, as they are.
+        * @param - byte array, int, int.
+        * @return - OutputSink, this sink.
+        * @post - the bytes are buffered.
+        **/
+        public OutputSink write( byte[] bytes, int offset, int length )
+        {
+            for( int index = offset, end = offset + length; index < end; )
+            {
+                if( position == buffer.length )
+                {
+                    drain();
+                }
+
+                int count = Math.min( end - index, buffer.length - position );
+                System.arraycopy( bytes, index, buffer, position, count );
+                position += count;
+                index += count;
+            }
+
+            return this;
+        }
+
+
+        /**
+        * Writes the buffered bytes to the channel.
+        * @param - none.
+        * @return - none.
+        * @post - the buffer is empty.
+        * @exception UncheckedIOException
+        *   Indicates the channel could not be written.
+        **/
+        private void drain()
+        {
+            buffer_view.clear().limit( position );
+
+            try
+            {
+                while( buffer_view.hasRemaining() )
+                {
+                    channel.write( buffer_view );
+                }
+            }
+            catch( IOException exception )
+            {
+                throw new UncheckedIOException( exception );
+            }
+
+            bytes_written += position;
+            position = 0;
+        }
+
+
+        /**
+        * Writes everything buffered so far.
+        * @param - none.
+        * @return - none.
+        * @post - the buffer is empty.
+        * @exception UncheckedIOException
+        *   Indicates the channel could not be written.
+        **/
+        public void flush()
+        {
+            drain();
+        }
+
+
+        /**
+        * Flushes the sink and closes the channel if it belongs to the sink.
+        * @param - none.
+        * @return - none.
+        * @post - the sink can not be written to.
+        * @exception UncheckedIOException
+        *   Indicates the channel could not be written or closed.
+        **/
+        public void close()
+        {
+            drain();
+
+            if( close_channel )
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch( IOException exception )
+                {
+                    throw new UncheckedIOException( exception );
+                }
+            }
+        }
+
+
+        /**
+        * Returns the number of bytes written so far, including the
+        *   ones still in the buffer.
+        * @param - none.
+        * @return - long.
+        * @post - class values are unchanged.
+        **/
+        public long bytes_written()
+        {
+            return bytes_written + position;
+        }
+    }
+
+    /**
+    * A class that joins the output of --shard runs back into the output
+    *  of a whole run. The files are copied to a sink in the order given,
+    *  while the "Tree number" line of every tree is checked: the numbers
+    *  must follow on from 1 without a gap and every tree must have the
+    *  same size. When the last file is joined the number of trees must
+    *  be the tree count of that size, or the count of the trees that
+    *  pass the filter the shards were printed with, and the count line
+    *  is added. A failed check is thrown as IllegalStateException.
+    */
+    static class ShardMerger
+    {
+        private static final byte[] RECORD_START = "Tree number ".getBytes( StandardCharsets.US_ASCII );
+        private static final byte[] COUNT_START = "Binary search tree count".getBytes( StandardCharsets.US_ASCII );
+
+        private final OutputSink sink;
+        private final Options options;
+        private final byte[] buffer, line;
+        private byte[] line_prefix;
+        private int line_length;
+        private boolean line_start, in_record_line;
+        private long next_number;
+        private int size;
+        private String current_path;
+
+
+        /**
+         * Constructor for a merger that writes to input_sink, of shards
+         *   printed with the filter of input_options.
+         * @param - OutputSink, Options.
+         * @post - the merger expects tree number 1 next.
+         * @exception OutOfMemoryError
+         *   Indicates insufficient memory.
+         **/ 
+        public ShardMerger( OutputSink input_sink, Options input_options )
+        {
+            sink = input_sink;
+            options = input_options;
+            buffer = new byte[ 1 << 20 ];
+            line = new byte[ 1024 ];
+            next_number = 1;
+            size = 0;
+        }
+
+
+        /**
+        * Copies the shard file at input_path to the sink,
+        *   checking its tree numbers.
+        * @param - String.
+        * @return - none.
+        * @post - the file is written to the sink.
+        * @exception UncheckedIOException
+        *   Indicates the file could not be read.
+        * @exception IllegalStateException
+        *   Indicates the file does not follow on from the files before it.
+        **/
+        public void append( String input_path )
+        {
+            current_path = input_path;
+            line_start = true;
+            in_record_line = false;
+            line_length = 0;
+
+            try( FileChannel channel = FileChannel.open( Paths.get( input_path ), StandardOpenOption.READ ) )
+            {
+                ByteBuffer buffer_view = ByteBuffer.wrap( buffer );
+                int count;
+
+                while( ( count = channel.read( buffer_view.clear() ) ) >= 0 )
+                {
+                    scan( count );
+                    sink.write( buffer, 0, count );
+                }
+            }
+            catch( IOException exception )
+            {
+                throw new UncheckedIOException( exception );
+            }
+
+            if( in_record_line )
+            {
+                check_record();
+            }
+        }
+
+
+        /**
+        * Checks that the joined files hold every tree of their size
+        *   and writes the count line.
+        * @param - none.
+        * @return - long, the number of trees joined.
+        * @post - the count line is written to the sink.
+        * @exception IllegalStateException
+        *   Indicates trees are missing.
+        **/
+        public long finish()
+        {
+            long total = next_number - 1;
+
+            if( size == 0 )
+            {
+                throw new IllegalStateException( "no trees were found in the shard files" );
+            }
+
+            TreeFilter filter = options.filtered() && TreeCount.fits_long( size ) ? options.tree_filter( size ) : null;
+            BigInteger expected = filter == null ? TreeCount.big_count( size ) : BigInteger.valueOf( filter.count() );
+
+            if( !BigInteger.valueOf( total ).equals( expected ) )
+            {
+                throw new IllegalStateException( String.format( "%,d trees were joined but there are %,d trees of %d%s",
+                    total, expected, size, filter == null ? "" : filter ) );
+            }
+
+            sink.printf( "Binary search tree count = %,d\n", total );
+
+            return total;
+        }
+
+
+        /**
+        * Collects the lines that start with "Tree number " or with the count
+        *   line from the first count bytes of the buffer and checks each
+        *   one when it ends.
+        * @param - int.
+        * @return - none.
+        * @post - the line state is changed.
+        **/
+        private void scan( int count )
+        {
+            for( int index = 0; index < count; ++index )
+            {
+                byte character = buffer[ index ];
+
+                if( line_start )
+                { // only tree lines and count lines are collected
+                    line_prefix = character == COUNT_START[0] ? COUNT_START : RECORD_START;
+                    in_record_line = character == line_prefix[0];
+                    line_length = 0;
+                    line_start = false;
+                }
+
+                if( character == '\n' )
+                {
+                    if( in_record_line )
+                    {
+                        check_record();
+                    }
+
+                    in_record_line = false;
+                    line_start = true;
+                }
+                else if( in_record_line )
+                {
+                    if( line_length == line.length )
+                    {
+                        throw new IllegalStateException( current_path + " has a tree line that is too long" );
+                    }
+
+                    line[ line_length++ ] = character;
+
+                    if( line_length <= line_prefix.length && character != line_prefix[ line_length - 1 ] )
+                    {
+                        in_record_line = false;
+                    }
+                }
+            }
+        }
+
+
+        /**
+        * Checks the collected "Tree number k: {...}" line: k must be the
+        *   next tree number and the sequence must have the same size as
+        *   the trees before it.
+        * @param - none.
+        * @return - none.
+        * @post - the next tree number is counted up.
+        * @exception IllegalStateException
+        *   Indicates the line does not follow on from the trees before it.
+        **/
+        private void check_record()
+        {
+            String text = new String( line, 0, line_length, StandardCharsets.US_ASCII );
+
+            if( line_prefix == COUNT_START && line_length >= COUNT_START.length )
+            {
+                throw new IllegalStateException( current_path + " holds a count line, it is not the output of --shard" );
+            }
+
+            if( line_length < RECORD_START.length || text.indexOf( ':' ) < 0 || text.indexOf( '{' ) < 0 )
+            {
+                return; // "Tree number" is not at the start of a tree line
+            }
+
+            long number = 0;
+
+            for( int index = RECORD_START.length; text.charAt( index ) != ':'; ++index )
+            { // the grouping separators are skipped
+                if( Character.isDigit( text.charAt( index ) ) )
+                {
+                    number = 10 * number + ( text.charAt( index ) - '0' );
+                }
+            }
+
+            int record_size = 1;
+
+            for( int index = text.indexOf( '{' ); index < text.length(); ++index )
+            {
+                if( text.charAt( index ) == ',' )
+                {
+                    ++record_size;
+                }
+            }
+
+            if( number != next_number )
+            {
+                throw new IllegalStateException( String.format( "%s has tree number %,d where %,d was expected",
+                    current_path, number, next_number ) );
+            }
+
+            if( size != 0 && record_size != size )
+            {
+                throw new IllegalStateException( String.format( "%s has a tree of %d where trees of %d were expected",
+                    current_path, record_size, size ) );
+            }
+
+            size = record_size;
+            ++next_number;
+        }
+    }
+
+    /**
+    * A class that reads the binary form of an enumeration, which --binary
+    *  writes instead of the pictures. The file starts with a header of
+    *  HEADER_SIZE bytes: the MAGIC bytes, the size of the trees as an int,
+    *  then the first tree number and the tree number after the last as
+    *  longs, all big endian. A record of record_size() bytes follows for
+    *  each tree, in tree number order. A record holds two bits for each
+    *  node in preorder, whether it has a left child and whether it has
+    *  a right child, from the high bit of its first byte. That is the
+    *  shape of the tree, the values are the nodes in order, 1 to size.
+    *  A record can be read in order with next() or by tree number with
+    *  sequence(), because every record has the same size.
+    */
+    static class BinaryTreeFile implements SequenceIterator, Closeable
+    {
+        /** the bytes a binary tree file starts with */
+        public static final byte[] MAGIC = {'O', 'T', 'B', '1'};
+
+        /** the size of the header, in bytes */
+        public static final int HEADER_SIZE = MAGIC.length + 4 + 8 + 8;
+
+        /** no link, and the link of a node whose left child is the next node */
+        private static final int NONE = -1, WAITING = -2;
+
+        private final String path;
+        private final FileChannel channel;
+        private final int size, record_size;
+        private final long first_number, end_number;
+        private final byte[] buffer;
+        private final ByteBuffer buffer_view;
+        private final int[] left_link, right_link, stack;
+        private long next_number;
+
+
+        /**
+         * Constructor for a reader of the binary tree file at input_path,
+         *   which reads the header.
+         * @param - String.
+         * @post - 
+         *   the file is opened and the reader is set to its first tree.
+         * @exception UncheckedIOException
+         *   Indicates the file could not be read.
+         * @exception IllegalStateException
+         *   Indicates the file does not start with a usable header.
+         **/ 
+        public BinaryTreeFile( String input_path )
+        {
+            path = input_path;
+
+            ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+            byte[] magic = new byte[ MAGIC.length ];
+
+            try
+            {
+                channel = FileChannel.open( Paths.get( input_path ), StandardOpenOption.READ );
+
+                if( channel.size() >= HEADER_SIZE )
+                {
+                    read( header, 0 );
+                    header.flip().get( magic );
+                }
+            }
+            catch( IOException exception )
+            {
+                throw new UncheckedIOException( exception );
+            }
+
+            if( !Arrays.equals( magic, MAGIC ) )
+            {
+                close();
+                throw new IllegalStateException( path + " is not a binary tree file" );
+            }
+
+            size = header.getInt();
+            first_number = header.getLong();
+            end_number = header.getLong();
+
+            if( size < 1 || !TreeCount.fits_long( size ) || first_number < 1 || end_number < first_number ||
+                end_number - 1 > TreeCount.count( size ) )
+            {
+                close();
+                throw new IllegalStateException( String.format( "%s has a header for trees %,d to %,d of %d",
+                    path, first_number, end_number - 1, size ) );
+            }
+
+            record_size = record_size( size );
+            buffer = new byte[ record_size * Math.max( 1, OutputSink.DEFAULT_BUFFER_SIZE / record_size ) ];
+            buffer_view = ByteBuffer.wrap( buffer ).limit( 0 );
+            left_link = new int[ size ];
+            right_link = new int[ size ];
+            stack = new int[ size ];
+            next_number = first_number;
+        }
+
+
+        /**
+        * Returns the number of bytes in the record of a tree of input_size.
+        * @param - int.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        public static int record_size( int input_size )
+        {
+            return ( 2 * input_size + 7 ) / 8;
+        }
+
+
+        /**
+        * Writes the header of a file holding the trees of input_size
+        *   numbered first_tree up to but not including end_tree to sink.
+        * @param - OutputSink, int, long, long.
+        * @return - none.
+        * @post - the header is buffered in sink.
+        **/
+        public static void write_header( OutputSink sink, int input_size, long first_tree, long end_tree )
+        {
+            ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+
+            header.put( MAGIC ).putInt( input_size ).putLong( first_tree ).putLong( end_tree );
+            sink.write( header.array(), 0, HEADER_SIZE );
+        }
+
+
+        /**
+        * Writes the record of the tree that sequence builds into the
+        *   first record_size() bytes of record. The sequence must be the
+        *   preorder of a tree of the values 1 to its length, which every
+        *   sequence of permutate() is. The value range of each subtree is
+        *   kept on a stack, a node has a left child when its value is
+        *   above the least value of its range, and a right child when it
+        *   is below the greatest.
+        * @param - int array, byte array.
+        * @return - none.
+        * @post - the record is overwritten.
+        **/
+        public static void encode( int[] sequence, byte[] record )
+        {
+            int[] ranges = new int[ 2 * sequence.length + 2 ];
+            int top = 0;
+
+            Arrays.fill( record, 0, record_size( sequence.length ), (byte) 0 );
+            ranges[ top++ ] = 1;
+            ranges[ top++ ] = sequence.length;
+
+            for( int index = 0; index < sequence.length; ++index )
+            {
+                int greatest = ranges[ --top ];
+                int least = ranges[ --top ];
+                int value = sequence[ index ];
+
+                if( value < greatest )
+                { // the right range is taken after the whole left subtree
+                    record[ ( 2 * index + 1 ) >> 3 ] |= (byte) ( 0x80 >>> ( ( 2 * index + 1 ) & 7 ) );
+                    ranges[ top++ ] = value + 1;
+                    ranges[ top++ ] = greatest;
+                }
+
+                if( value > least )
+                {
+                    record[ ( 2 * index ) >> 3 ] |= (byte) ( 0x80 >>> ( ( 2 * index ) & 7 ) );
+                    ranges[ top++ ] = least;
+                    ranges[ top++ ] = value - 1;
+                }
+            }
+        }
+
+
+        /**
+        * Returns the size of the trees in the file.
+        * @param - none.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        public int size()
+        {
+            return size;
+        }
+
+
+        /**
+        * Returns the tree number of the first record.
+        * @param - none.
+        * @return - long.
+        * @post - class values are unchanged.
+        **/
+        public long first_number()
+        {
+            return first_number;
+        }
+
+
+        /**
+        * Returns the tree number after the last record.
+        * @param - none.
+        * @return - long.
+        * @post - class values are unchanged.
+        **/
+        public long end_number()
+        {
+            return end_number;
+        }
+
+
+        /**
+        * Returns the tree number of the record next() returns.
+        * @param - none.
+        * @return - long.
+        * @post - class values are unchanged.
+        **/
+        public long next_number()
+        {
+            return next_number;
+        }
+
+
+        /**
+        * Returns whether the file holds every tree of its size.
+        * @param - none.
+        * @return - boolean.
+        * @post - class values are unchanged.
+        **/
+        public boolean complete()
+        {
+            return first_number == 1 && end_number - 1 == TreeCount.count( size );
+        }
+
+
+        /**
+        * Returns whether another record is available.
+        * @param - none.
+        * @return - boolean.
+        * @post - class values are unchanged.
+        **/
+        public boolean hasNext()
+        {
+            return next_number < end_number;
+        }
+
+
+        /**
+        * Returns the sequence of the next record. The records are read
+        *   from the file a buffer at a time.
+        * @param - none.
+        * @return - int array.
+        * @post - the reader is moved to the next record.
+        * @exception NoSuchElementException
+        *   Indicates every record has been returned.
+        * @exception IllegalStateException
+        *   Indicates the file ends early or the record is not a tree.
+        **/
+        public int[] next()
+        {
+            return next( new int[ size ] );
+        }
+
+        public int[] next( int[] output )
+        {
+            if( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+
+            if( buffer_view.remaining() < record_size )
+            {
+                long records = Math.min( buffer.length / record_size, end_number - next_number );
+
+                buffer_view.clear().limit( (int) records * record_size );
+                read( buffer_view, record_position( next_number ) );
+                buffer_view.flip();
+            }
+
+            decode( buffer, buffer_view.position(), output );
+
+            buffer_view.position( buffer_view.position() + record_size );
+            ++next_number;
+
+            return output;
+        }
+
+
+        /**
+        * Returns the sequence of the record of tree_number, without
+        *   reading the records before it, and moves the reader to
+        *   the record after it.
+        * @param - long.
+        * @return - int array.
+        * @post - the reader is moved to the record after tree_number.
+        * @exception IllegalArgumentException
+        *   Indicates the file does not hold tree_number.
+        **/
+        public int[] sequence( long tree_number )
+        {
+            if( tree_number < first_number || tree_number >= end_number )
+            {
+                throw new IllegalArgumentException( String.format( "%s holds trees %,d to %,d, not %,d",
+                    path, first_number, end_number - 1, tree_number ) );
+            }
+
+            next_number = tree_number;
+            buffer_view.limit( 0 );
+
+            return next();
+        }
+
+
+        /**
+        * Returns the Tree of the record of tree_number, so it can be
+        *   printed with toString().
+        * @param - long.
+        * @return - Tree of Integers.
+        * @post - the reader is moved to the record after tree_number.
+        * @exception IllegalArgumentException
+        *   Indicates the file does not hold tree_number.
+        **/
+        public Tree<Integer> tree( long tree_number )
+        {
+            return new Tree<Integer>( int_to_integer_arrays( sequence( tree_number ) ) );
+        }
+
+
+        /**
+        * Closes the file.
+        * @param - none.
+        * @return - none.
+        * @post - no more records can be read.
+        * @exception UncheckedIOException
+        *   Indicates the file could not be closed.
+        **/
+        public void close()
+        {
+            try
+            {
+                channel.close();
+            }
+            catch( IOException exception )
+            {
+                throw new UncheckedIOException( exception );
+            }
+        }
+
+
+        /**
+        * Writes the sequence of the record at offset in bytes into
+        *   sequence. The links of the nodes are found in preorder: a node
+        *   with a left child is followed by it, otherwise the node is the
+        *   right child of the last node still waiting for one. The values
+        *   are then given to the nodes in order.
+        * @param - byte array, int, int array.
+        * @return - int array, sequence.
+        * @post - the sequence is overwritten.
+        * @exception IllegalStateException
+        *   Indicates the record is not a tree of the file's size.
+        **/
+        private int[] decode( byte[] bytes, int offset, int[] sequence )
+        {
+            int top = 0;
+
+            for( int node = 0; node < size; ++node )
+            {
+                boolean has_left = ( bytes[ offset + ( ( 2 * node ) >> 3 ) ] & ( 0x80 >>> ( ( 2 * node ) & 7 ) ) ) != 0;
+                boolean has_right = ( bytes[ offset + ( ( 2 * node + 1 ) >> 3 ) ] & ( 0x80 >>> ( ( 2 * node + 1 ) & 7 ) ) ) != 0;
+
+                left_link[ node ] = NONE;
+                right_link[ node ] = NONE;
+
+                if( node > 0 )
+                {
+                    if( left_link[ node - 1 ] == WAITING )
+                    {
+                        left_link[ node - 1 ] = node;
+                    }
+                    else if( top > 0 )
+                    {
+                        right_link[ stack[ --top ] ] = node;
+                    }
+                    else
+                    {
+                        throw new IllegalStateException( String.format( "%s has a record that is not a tree of %d, at tree %,d",
+                            path, size, next_number ) );
+                    }
+                }
+
+                if( has_left )
+                {
+                    left_link[ node ] = WAITING;
+                }
+
+                if( has_right )
+                {
+                    stack[ top++ ] = node;
+                }
+            }
+
+            if( top > 0 || left_link[ size - 1 ] == WAITING )
+            {
+                throw new IllegalStateException( String.format( "%s has a record that is not a tree of %d, at tree %,d",
+                    path, size, next_number ) );
+            }
+
+            int value = 0;
+
+            for( int node = 0; node != NONE || top > 0; )
+            { // in order, the left links are followed down and the stack holds the nodes above
+                if( node != NONE )
+                {
+                    stack[ top++ ] = node;
+                    node = left_link[ node ];
+                }
+                else
+                {
+                    node = stack[ --top ];
+                    sequence[ node ] = ++value;
+                    node = right_link[ node ];
+                }
+            }
+
+            return sequence;
+        }
+
+        /**
+        * Returns the position in the file of the record of tree_number.
+        * @param - long.
+        * @return - long.
+        * @post - class values are unchanged.
+        **/
+        private long record_position( long tree_number )
+        {
+            return HEADER_SIZE + ( tree_number - first_number ) * record_size;
+        }
+
+
+        /**
+        * Fills target from the file, starting at position.
+        * @param - ByteBuffer, long.
+        * @return - none.
+        * @post - target is filled.
+        * @exception UncheckedIOException
+        *   Indicates the file could not be read.
+        * @exception IllegalStateException
+        *   Indicates the file ends before target is filled.
+        **/
+        private void read( ByteBuffer target, long position )
+        {
+            try
+            {
+                while( target.hasRemaining() )
+                {
+                    int count = channel.read( target, position );
+
+                    if( count < 0 )
+                    {
+                        throw new IllegalStateException( path + " ends before its last tree" );
+                    }
+
+                    position += count;
+                }
+            }
+            catch( IOException exception )
+            {
+                throw new UncheckedIOException( exception );
+            }
+        }
+    }
+
+    /**
+    * A class that reads the keys of a tree of strings from a file or
+    *  from standard input, one key to a line, so a tree can have more
+    *  keys than fit on a command line. The bytes are read a large buffer
+    *  at a time and split on '\n', a '\r' before it is dropped, and each
+    *  line is decoded with the default charset and interned into a
+    *  LabelDictionary as it is found. Only the distinct keys and an int
+    *  id for each line are kept, never an array of the keys.
+    *  The last line does not need a '\n'. A key longer than the buffer
+    *  grows it.
+    */
+    static class KeyFile implements Closeable
+    {
+        /** the path that reads the keys from standard input */
+        public static final String STANDARD_INPUT = "-";
+
+        private final ReadableByteChannel channel;
+        private final Charset charset;
+        private byte[] buffer;
+        private int[] ids;
+        private int key_count;
+        private long bytes_read;
+
+
+        /**
+         * Constructor for a reader of the keys in the file at input_path,
+         *   or in standard input when input_path is STANDARD_INPUT.
+         * @param - String.
+         * @post - the file is opened, no keys are read.
+         * @exception UncheckedIOException
+         *   Indicates the file could not be opened.
+         **/ 
+        public KeyFile( String input_path )
+        {
+            try
+            {
+                channel = input_path.equals( STANDARD_INPUT ) ? new FileInputStream( FileDescriptor.in ).getChannel() :
+                    FileChannel.open( Paths.get( input_path ), StandardOpenOption.READ );
+            }
+            catch( IOException exception )
+            {
+                throw new UncheckedIOException( exception );
+            }
+
+            charset = Charset.defaultCharset();
+            buffer = new byte[ OutputSink.DEFAULT_BUFFER_SIZE ];
+            ids = new int[ 1024 ];
+            key_count = 0;
+            bytes_read = 0;
+        }
+
+
+        /**
+        * Reads every key to the end of the file into dictionary, keeping
+        *   the id of each line in order.
+        * @param - LabelDictionary<String>.
+        * @return - none.
+        * @post - the ids of the keys are kept, see ids() and key_count().
+        * @exception UncheckedIOException
+        *   Indicates the file could not be read.
+        **/
+        public void read( LabelDictionary<String> dictionary )
+        {
+            int filled = 0, line_start = 0, scanned = 0;
+
+            try
+            {
+                while( true )
+                {
+                    if( filled == buffer.length )
+                    {
+                        if( line_start == 0 )
+                        { // one key fills the buffer
+                            buffer = Arrays.copyOf( buffer, 2 * buffer.length );
+                        }
+                        else
+                        { // moves the unfinished line to the front
+                            System.arraycopy( buffer, line_start, buffer, 0, filled - line_start );
+                            filled -= line_start;
+                            scanned -= line_start;
+                            line_start = 0;
+                        }
+                    }
+
+                    int count = channel.read( ByteBuffer.wrap( buffer, filled, buffer.length - filled ) );
+
+                    if( count < 0 )
+                    {
+                        break;
+                    }
+
+                    filled += count;
+                    bytes_read += count;
+
+                    for( ; scanned < filled; ++scanned )
+                    {
+                        if( buffer[ scanned ] == '\n' )
+                        {
+                            add( dictionary, line_start, scanned );
+                            line_start = scanned + 1;
+                        }
+                    }
+                }
+            }
+            catch( IOException exception )
+            {
+                throw new UncheckedIOException( exception );
+            }
+
+            if( line_start < filled )
+            {
+                add( dictionary, line_start, filled );
+            }
+        }
+
+
+        /**
+        * Interns the key in the buffer from start up to but not including
+        *   end, without a '\r' at its end, and keeps its id.
+        * @param - LabelDictionary<String>, int, int.
+        * @return - none.
+        * @post - the key is interned and its id kept.
+        **/
+        private void add( LabelDictionary<String> dictionary, int start, int end )
+        {
+            if( end > start && buffer[ end - 1 ] == '\r' )
+            {
+                --end;
+            }
+
+            if( key_count == ids.length )
+            {
+                ids = Arrays.copyOf( ids, 2 * ids.length );
+            }
+
+            ids[ key_count++ ] = dictionary.intern( new String( buffer, start, end - start, charset ) );
+        }
+
+
+        /**
+        * Returns the ids of the keys read, in order, the first
+        *   key_count() of them are used.
+        * @param - none.
+        * @return - int array.
+        * @post - class values are unchanged.
+        **/
+        public int[] ids()
+        {
+            return ids;
+        }
+
+
+        /**
+        * Returns the number of keys read.
+        * @param - none.
+        * @return - int.
+        * @post - class values are unchanged.
+        **/
+        public int key_count()
+        {
+            return key_count;
+        }
+
+
+        /**
+        * Returns the number of bytes read.
+        * @param - none.
+        * @return - long.
+        * @post - class values are unchanged.
+        **/
+        public long bytes_read()
+        {
+            return bytes_read;
+        }
+
+
+        /**
+        * Closes the file, standard input is closed too.
+        * @param - none.
+        * @return - none.
+        * @post - no more keys can be read.
+        * @exception UncheckedIOException
+        *   Indicates the file could not be closed.
+        **/
+        public void close()
+        {
+            try
+            {
+                channel.close();
+            }
+            catch( IOException exception )
+            {
+                throw new UncheckedIOException( exception );
+            }
+        }
+    }
+
+    /**
+    * A class that gathers the counters and phase times of a run for the
+    *  --stats report, and holds the flight recorder events of the
+    *  program. Nothing is counted or timed unless enabled is set, so
+    *  when it is not the hot paths only test a static flag, and the
+    *  events are not created unless a flight recording is running.
+    *  The phase times are summed over every thread that renders, so
+    *  with --parallel they are thread time rather than wall time.
+    *
+    *  The layout counters replace the collision loop passes and shifted
+    *  nodes of the original layout: a contour step compares one level of
+    *  two children, and a spread node is a node whose children had to
+    *  be pushed apart, by its spread.
+    */
+    static class Stats
+    {
+        /** the phases of a run that are timed */
+        public static final int READ = 0, ENUMERATE = 1, BUILD = 2, LAYOUT = 3, RENDER = 4, WRITE = 5;
+
+        private static final String[] PHASE_NAMES = {"reading", "enumeration", "construction", "layout", "rendering",
+            "writing"};
+
+        /** whether the counters are gathered, set before a run starts */
+        public static boolean enabled = false;
+
+        /** whether the events are created, which is only when a flight
+            recording was running when the program started, because
+            loading the event classes slows the start of every run */
+        public static boolean events = false;
+
+        private static final LongAdder[] phase_nanos = new LongAdder[ PHASE_NAMES.length ];
+        private static final LongAdder trees = new LongAdder(), bytes = new LongAdder();
+        private static final LongAdder keys_read = new LongAdder(), bytes_read = new LongAdder();
+        private static final LongAdder placed_nodes = new LongAdder(), contour_steps = new LongAdder();
+        private static final LongAdder spread_nodes = new LongAdder(), spread_total = new LongAdder();
+        private static final LongAdder cache_hits = new LongAdder(), cache_misses = new LongAdder();
+
+        static
+        {
+            for( int phase = 0; phase < phase_nanos.length; ++phase )
+            {
+                phase_nanos[ phase ] = new LongAdder();
+            }
+        }
+
+
+        /**
+        * A run of print_all_trees.
+        */
+        @Name( "OrganizedTree.Enumeration" )
+        @Label( "Tree Enumeration" )
+        @Category( "Organized Tree" )
+        static class EnumerationEvent extends Event
+        {
+            @Label( "Size" )
+            int size;
+
+            @Label( "Trees" )
+            long trees;
+
+            @Label( "Bytes Written" )
+            @DataAmount
+            long bytes;
+
+            @Label( "Threads" )
+            int threads;
+        }
+
+
+        /**
+        * The construction of a Tree from an array, without its layout.
+        */
+        @Name( "OrganizedTree.Build" )
+        @Label( "Tree Construction" )
+        @Category( "Organized Tree" )
+        @Threshold( "1 ms" )
+        static class BuildEvent extends Event
+        {
+            @Label( "Nodes" )
+            int nodes;
+        }
+
+
+        /**
+        * A layout or an update of a layout by ContourLayout.
+        */
+        @Name( "OrganizedTree.Layout" )
+        @Label( "Tree Layout" )
+        @Category( "Organized Tree" )
+        @Threshold( "1 ms" )
+        static class LayoutEvent extends Event
+        {
+            @Label( "Nodes Placed" )
+            int nodes;
+
+            @Label( "Contour Steps" )
+            long contour_steps;
+        }
+
+
+        /**
+        * The rendering of a Tree into its canvas.
+        */
+        @Name( "OrganizedTree.Render" )
+        @Label( "Tree Rendering" )
+        @Category( "Organized Tree" )
+        @Threshold( "1 ms" )
+        static class RenderEvent extends Event
+        {
+            @Label( "Nodes" )
+            int nodes;
+
+            @Label( "Characters" )
+            int characters;
+
+            @Label( "Wide Links" )
+            boolean wide_link;
+        }
+
+
+        /**
+        * Adds the time since since to phase, and returns the time now
+        *   so the next phase can be timed from it.
+        * @param - int, long.
+        * @return - long, System.nanoTime().
+        * @post - the time of phase is increased.
+        **/
+        public static long lap( int phase, long since )
+        {
+            long now = System.nanoTime();
+
+            phase_nanos[ phase ].add( now - since );
+
+            return now;
+        }
+
+
+        /**
+        * Adds the trees and the bytes written by a run.
+        * @param - long, long.
+        * @return - none.
+        * @post - the counters are increased.
+        **/
+        public static void record_trees( long tree_count, long written_bytes )
+        {
+            trees.add( tree_count );
+            bytes.add( written_bytes );
+        }
+
+
+        /**
+        * Adds the keys and the bytes read for a tree of strings.
+        * @param - long, long.
+        * @return - none.
+        * @post - the counters are increased.
+        **/
+        public static void record_keys( long key_count, long read_bytes )
+        {
+            keys_read.add( key_count );
+            bytes_read.add( read_bytes );
+        }
+
+
+        /**
+        * Adds the counters and the time of a layout.
+        * @param - long, long, long, long, long.
+        * @return - none.
+        * @post - the counters are increased.
+        **/
+        public static void record_layout( long placed, long steps, long spread_count, long spread_sum, long nanos )
+        {
+            placed_nodes.add( placed );
+            contour_steps.add( steps );
+            spread_nodes.add( spread_count );
+            spread_total.add( spread_sum );
+            phase_nanos[ LAYOUT ].add( nanos );
+        }
+
+
+        /**
+        * Adds the hits and misses of a shape cache.
+        * @param - long, long.
+        * @return - none.
+        * @post - the counters are increased.
+        **/
+        public static void record_cache( long hits, long misses )
+        {
+            cache_hits.add( hits );
+            cache_misses.add( misses );
+        }
+
+
+        /**
+        * Prints the summary of the run, which took elapsed_nanos, to
+        *   standard error so it is kept apart from the trees.
+        * @param - long.
+        * @return - none.
+        * @post - the summary is printed.
+        **/
+        public static void report( long elapsed_nanos )
+        {
+            double seconds = Math.max( elapsed_nanos, 1 ) / 1e9;
+
+            System.err.printf( "Stats: %,d trees in %,.1f ms, %,.0f trees/s, %,d bytes, %,.1f MB/s\n", trees.sum(),
+                elapsed_nanos / 1e6, trees.sum() / seconds, bytes.sum(), bytes.sum() / seconds / 1e6 );
+
+            for( int phase = 0; phase < PHASE_NAMES.length; ++phase )
+            {
+                if( phase == READ && bytes_read.sum() == 0 )
+                {
+                    continue; // only a tree of keys from a file reads
+                }
+
+                System.err.printf( "  %-14s %,12.1f ms", PHASE_NAMES[ phase ], phase_nanos[ phase ].sum() / 1e6 );
+
+                if( phase == READ )
+                {
+                    System.err.printf( "   %,d keys, %,d bytes, %,.1f MB/s", keys_read.sum(), bytes_read.sum(),
+                        bytes_read.sum() / ( Math.max( phase_nanos[ READ ].sum(), 1 ) / 1e9 ) / 1e6 );
+                }
+                else if( phase == LAYOUT )
+                {
+                    System.err.printf( "   %,d nodes placed, %,d contour steps, %,d nodes spread by %,d in all",
+                        placed_nodes.sum(), contour_steps.sum(), spread_nodes.sum(), spread_total.sum() );
+                }
+
+                System.err.printf( "\n" );
+            }
+
+            if( cache_hits.sum() + cache_misses.sum() > 0 )
+            { // the cached renders lay out and draw together, their time is in rendering
+                System.err.printf( "  %-14s %,d hits, %,d misses\n", "shape cache", cache_hits.sum(), cache_misses.sum() );
+            }
+        }
+    }
+
+
+    public static Integer[] int_to_integer_arrays( int[] input_array )
+    {
+        Integer[] return_array = new Integer[input_array.length];
+
+        for( int index = 0; index < input_array.length; ++index )
+        {
+            return_array[index] = Integer.valueOf( input_array[index] );
+        }
+
+        return return_array;
+    }
+
+
+    /**
+     * This method returns the number of ways a binary
+     *  tree of input_count size can be constructed.
+     * @param - int.
+     * @return - long.
+     * @post - class values are unchanged.
+     * @exception ArithmeticException
+     *   Indicates the count does not fit in a long.
+     **/
+    public static long permutate_count( int input_count )
+    {
+        //p(3) == p(0)*p(2) + p(1)*p(1) + p(2)*p(0) == 2+1+2 == 5
+        //p(4) == p(0)*p(3) + p(1)*p(2) + p(2)*p(1) + p(3)*p(0) == 5+2+2+5 == 14
+
+        return TreeCount.count( input_count );
+    }
+
+
+    /**
+     * This method returns the number of ways a binary tree of
+     *  input_count size can be constructed, for any size.
+     * @param - int.
+     * @return - BigInteger.
+     * @post - the counts up to input_count are calculated and kept.
+     **/
+    public static BigInteger permutate_big_count( int input_count )
+    {
+        return TreeCount.big_count( input_count );
+    }
+
+
+    /**
+     * This method recursively returns every possible array the input_array
+     *  can be arranged to construct a binary tree.
+     * @param - int array.
+     * @return - two dimentional int array.
+     * @post - a (probably lengthly) array is alocated an populated.
+     **/
+    public static Integer[][] permutate( Integer[] input_array )
+    {
+        if( input_array.length > 1 )
+        {
+            Integer[][] permutations = new Integer[ (int) permutate_count( input_array.length ) ][ input_array.length ];
+            int master_index = 0;
+
+            for( int index = 0; index < input_array.length; ++index )
+            {
+                Integer[] subleft = new Integer[ index ];
+                Integer[] subright = new Integer[ input_array.length - index - 1 ];
+
+                int left_index = 0;
+                int right_index = 0;
+
+                for( Integer array_element: input_array )
+                {
+                    if( array_element < input_array[ index ] )
+                    {
+                        subleft[ left_index++ ] = array_element;
+                    }
+
+                    if( array_element > input_array[ index ] )
+                    {
+                        subright[ right_index++ ] = array_element;
+                    }
+                }
+
+                for( Integer[] permutated_left: permutate( subleft ) )
+                {
+                    for( Integer[] permutated_right: permutate( subright ) )
+                    {
+                        permutations[ master_index ][0] = input_array[ index ];
+                        System.arraycopy(permutated_left, 0, permutations[ master_index ], 1, permutated_left.length);
+                        System.arraycopy(permutated_right, 0, permutations[ master_index ], 1 + permutated_left.length, permutated_right.length);
+
+                        ++master_index;
+                    }
+                }
+            }
+
+            return permutations;
+        }
+        else
+        {
+            return new Integer[][] {input_array};
+        }
+    }
+
+
+    /**
+     * This method returns every possible array the values 1 to input_size
+     *  can be arranged in to construct a distinct binary tree, generated
+     *  lazily one array at a time in the same order as permutate().
+     * @param - int.
+     * @return - Iterable of int arrays.
+     * @post - no arrays are allocated until the result is iterated.
+     **/
+    public static Iterable<int[]> permutations( int input_size )
+    {
+        return () -> new TreeEnumerator( input_size );
+    }
+
+
+    /**
+     * This method returns the sequences of the binary trees that pass
+     *  filter, in the order of permutate(), without generating the trees
+     *  that do not pass.
+     * @param - TreeFilter.
+     * @return - Iterable of int arrays.
+     * @post - no arrays are allocated until the iterable is iterated.
+     **/
+    public static Iterable<int[]> permutations( TreeFilter filter )
+    {
+        return () -> filter.iterator( 0 );
+    }
+
+
+    /**
+     * This method returns an iterator over the sequences of the trees of
+     *  the values 1 to input_size that pass filter, or of every tree when
+     *  it is null, starting at tree first_number (counting from zero)
+     *  among them.
+     * @param - int, long, TreeFilter.
+     * @return - SequenceIterator.
+     * @post - class values are unchanged.
+     **/
+    private static SequenceIterator tree_enumerator( int input_size, long first_number, TreeFilter filter )
+    {
+        return filter == null ? new TreeEnumerator( input_size, first_number ) : filter.iterator( first_number );
+    }
+
+
+    /**
+     * This method returns the same sequences as permutations()
+     *  as an ordered, sized stream.
+     * @param - int.
+     * @return - Stream of int arrays.
+     * @post - no arrays are allocated until the stream is consumed.
+     **/
+    public static Stream<int[]> permutation_stream( int input_size )
+    {
+        return StreamSupport.stream( Spliterators.spliterator( new TreeEnumerator( input_size ),
+            permutate_count( input_size ), Spliterator.ORDERED | Spliterator.NONNULL ), false );
+    }
+
+
+    /**
+     * This method returns the sequence of the tree with the given rank
+     *  among the trees of the values 1 to input_size, where rank 0 is the
+     *  first array of permutate() and "Tree number k" has rank k - 1.
+     *  The root is found from the root starts, then the rest of the rank
+     *  is split into a left rank and a right rank, so no tree before it
+     *  is generated.
+     * @param - int, long.
+     * @return - int array.
+     * @post - a sequence is allocated.
+     * @exception IllegalArgumentException
+     *   Indicates the rank is not below the tree count.
+     **/
+    public static int[] unrank( int input_size, long rank )
+    {
+        if( rank >= permutate_count( input_size ) )
+        {
+            throw new IllegalArgumentException( "tree number " + rank + " is out of range" );
+        }
+
+        return new TreeEnumerator( input_size, rank ).next();
+    }
+
+
+    /**
+     * This method returns the rank of the tree built by inserting sequence,
+     *  which must hold each of the values 1 to sequence.length once, in the
+     *  order permutate() produces the trees. Any insertion order of a tree
+     *  gives the same rank as its permutate() array.
+     * @param - int array.
+     * @return - long.
+     * @post - class values are unchanged.
+     * @exception IllegalArgumentException
+     *   Indicates the sequence is not an arrangement of 1 to its length.
+     **/
+    public static long rank( int[] sequence )
+    {
+        int size = sequence.length;
+        int[] left_link = new int[ size + 1 ];
+        int[] right_link = new int[ size + 1 ];
+        boolean[] seen = new boolean[ size + 1 ];
+
+        for( int index = 0; index < size; ++index )
+        {
+            int value = sequence[ index ];
+
+            if( value < 1 || value > size || seen[ value ] )
+            {
+                throw new IllegalArgumentException( "sequence is not an arrangement of 1 to " + size );
+            }
+
+            seen[ value ] = true;
+
+            if( index > 0 )
+            { // the nodes are the values themselves, 0 is no link
+                int parent = sequence[0];
+
+                while( true )
+                {
+                    int[] links = value < parent ? left_link : right_link;
+
+                    if( links[ parent ] == 0 )
+                    {
+                        links[ parent ] = value;
+                        break;
+                    }
+
+                    parent = links[ parent ];
+                }
+            }
+        }
+
+        return size == 0 ? 0 : subtree_rank( sequence[0], 1, size, left_link, right_link );
+    }
+
+
+    /**
+     * This method returns the rank of the subtree at root holding the
+     *  values first_value to last_value.
+     * @param - int, int, int, int array, int array.
+     * @return - long.
+     * @post - class values are unchanged.
+     **/
+    private static long subtree_rank( int root, int first_value, int last_value, int[] left_link, int[] right_link )
+    {
+        int size = last_value - first_value + 1;
+        long left_rank = 0, right_rank = 0;
+
+        if( left_link[ root ] != 0 )
+        {
+            left_rank = subtree_rank( left_link[ root ], first_value, root - 1, left_link, right_link );
+        }
+
+        if( right_link[ root ] != 0 )
+        {
+            right_rank = subtree_rank( right_link[ root ], root + 1, last_value, left_link, right_link );
+        }
+
+        return TreeCount.root_start( size, root - first_value ) +
+            left_rank * TreeCount.count( last_value - root ) + right_rank;
+    }
+
+
+    /**
+     * This method constructs an array with the values 1 to input_size
+     *  and prints all the binary trees that could be made from any
+     *  arrangement of that array.
+     * Arguments above a certain value will not be printed as a tree,
+     *  instead will be printed as a sequence of numbers.
+     * @param - int.
+     * @return - none.
+     * @post - 
+     *  This method does not change any of the rest of the program.
+     **/
+    public static void print_all_trees( int input_size )
+    {
+        print_all_trees( input_size, new Options() );
+    }
+
+
+    /**
+     * This method prints all the binary trees of the values 1 to
+     *  input_size, the way the options say to produce them.
+     * @param - int, Options.
+     * @return - none.
+     * @post - 
+     *  This method does not change any of the rest of the program.
+     **/
+    public static void print_all_trees( int input_size, Options options )
+    {
+        if( !TreeCount.fits_long( input_size ) )
+        {
+            System.out.printf( "Binary search tree count = %,d\n", permutate_big_count( input_size ) );
+            System.out.printf( "Input Error: %d will cause an interger over flow\n", input_size );
+            return;
+        }
+
+        if( input_size > 0 )
+        {
+            TreeFilter filter = options.tree_filter( input_size );
+            long total = filter == null ? permutate_count( input_size ) : filter.count();
+            long first_number = options.first_tree - 1;
+            long end_number = options.end_tree == 0 ? total : options.end_tree - 1;
+
+            if( options.shard_count > 0 )
+            {
+                first_number = Options.shard_start( total, options.shard_index - 1, options.shard_count );
+                end_number = Options.shard_start( total, options.shard_index, options.shard_count );
+            }
+
+            if( ( first_number >= total && options.shard_count == 0 ) || end_number > total )
+            {
+                System.out.printf( "Input Error: there are only %,d trees of %d%s\n", total, input_size,
+                    filter == null ? "" : filter );
+                return;
+            }
+
+            OutputSink sink = options.open_sink();
+            Stats.EnumerationEvent event = Stats.events ? new Stats.EnumerationEvent() : null;
+
+            if( event != null )
+            {
+                event.begin();
+            }
+
+            try
+            {
+                if( options.binary )
+                {
+                    write_binary_trees( input_size, first_number, end_number, filter, options, sink );
+                }
+                else if( options.rotations )
+                {
+                    print_trees_rotating( input_size, options, sink );
+                }
+                else if( options.threads > 1 )
+                {
+                    print_trees_parallel( input_size, first_number, end_number, filter, options, sink );
+                }
+                else
+                {
+                    SequenceIterator enumerator = tree_enumerator( input_size, first_number, filter );
+                    IntTree int_tree = new IntTree( input_size );
+                    ShapeCache shape_cache = options.shape_cache( input_size );
+                    int[] sequence = new int[ input_size ]; // every object of the loop is reused
+
+                    for( long number = first_number; number < end_number; ++number )
+                    {
+                        long mark = Stats.enabled ? System.nanoTime() : 0;
+
+                        enumerator.next( sequence );
+                        char[] picture;
+                        int picture_length;
+
+                        if( Stats.enabled )
+                        {
+                            mark = Stats.lap( Stats.ENUMERATE, mark );
+                        }
+
+                        if( shape_cache != null )
+                        {
+                            shape_cache.render( sequence, false );
+                            picture = shape_cache.canvas();
+                            picture_length = shape_cache.length();
+                        }
+                        else
+                        {
+                            int_tree.build( sequence ); // times its own construction and layout
+                            mark = Stats.enabled ? System.nanoTime() : 0;
+
+                            TreeCanvas canvas = int_tree.render( false );
+                            picture = canvas.canvas();
+                            picture_length = canvas.length();
+                        }
+
+                        if( Stats.enabled )
+                        {
+                            mark = Stats.lap( Stats.RENDER, mark );
+                        }
+
+                        write_tree( sink, number + 1, sequence, picture, picture_length );
+
+                        if( options.flush_each )
+                        {
+                            sink.flush();
+                        }
+
+                        if( Stats.enabled )
+                        {
+                            Stats.lap( Stats.WRITE, mark );
+                        }
+                    }
+
+                    if( shape_cache != null )
+                    {
+                        shape_cache.report();
+                    }
+                }
+
+                if( !options.ranged() && !options.binary )
+                { // a part of the trees is printed without the count, so parts can be joined
+                    sink.printf( "Binary search tree count = %,d\n", end_number - first_number );
+                }
+
+                if( Stats.enabled )
+                {
+                    Stats.record_trees( end_number - first_number, sink.bytes_written() );
+                }
+
+                if( event != null )
+                {
+                    event.size = input_size;
+                    event.trees = end_number - first_number;
+                    event.bytes = sink.bytes_written();
+                    event.threads = options.threads;
+                    event.commit();
+                }
+            }
+            finally
+            {
+                sink.close();
+            }
+        }
+        else
+        {
+            System.out.printf( "Input Error: %d is not an acceptible input.\n", input_size );
+        }
+    }
+
+
+    /**
+     * This method joins the shard files in the order given and writes
+     *  them where the options say, checking that together they hold
+     *  every tree of their size.
+     * @param - String array, Options.
+     * @return - none.
+     * @post - 
+     *  This method does not change any of the rest of the program.
+     **/
+    public static void merge_shards( String[] shard_paths, Options options )
+    {
+        if( shard_paths.length == 0 )
+        {
+            System.out.printf( "Input Error: --merge needs the shard files in order\n" );
+            return;
+        }
+
+        OutputSink sink = options.open_sink();
+
+        try
+        {
+            ShardMerger merger = new ShardMerger( sink, options );
+
+            for( String shard_path: shard_paths )
+            {
+                merger.append( shard_path );
+            }
+
+            merger.finish();
+        }
+        catch( IllegalStateException exception )
+        {
+            sink.flush();
+            System.out.printf( "Merge Error: %s\n", exception.getMessage() );
+            System.exit(1);
+        }
+        finally
+        {
+            sink.close();
+        }
+    }
+
+
+    /**
+     * This method prints the trees of the binary tree file given as
+     *  the argument the way print_all_trees() prints them, or the tree
+     *  numbers the options choose from it. The count line is printed
+     *  when the whole of a file that holds every tree is printed, so
+     *  the output is the same as print_all_trees() would print.
+     * @param - String array, Options.
+     * @return - none.
+     * @post - 
+     *  This method does not change any of the rest of the program.
+     **/
+    public static void decode_trees( String[] binary_paths, Options options )
+    {
+        if( binary_paths.length != 1 )
+        {
+            System.out.printf( "Input Error: --decode needs one binary tree file\n" );
+            return;
+        }
+
+        BinaryTreeFile trees;
+
+        try
+        {
+            trees = new BinaryTreeFile( binary_paths[0] );
+        }
+        catch( IllegalStateException | UncheckedIOException exception )
+        {
+            System.out.printf( "Decode Error: %s\n", exception.getMessage() );
+            System.exit(1);
+            return;
+        }
+
+        long first_number = options.ranged() ? options.first_tree : trees.first_number();
+        long end_number = options.end_tree == 0 ? trees.end_number() : options.end_tree;
+
+        if( first_number < trees.first_number() || end_number > trees.end_number() )
+        {
+            System.out.printf( "Input Error: %s holds trees %,d to %,d\n", binary_paths[0], trees.first_number(),
+                trees.end_number() - 1 );
+            trees.close();
+            return;
+        }
+
+        OutputSink sink = options.open_sink();
+        IntTree int_tree = new IntTree( trees.size() );
+        ShapeCache shape_cache = options.shape_cache( trees.size() );
+        int[] sequence_buffer = new int[ trees.size() ];
+
+        try
+        {
+            for( long number = first_number; number < end_number; ++number )
+            {
+                long mark = Stats.enabled ? System.nanoTime() : 0;
+                int[] sequence = number == first_number ? trees.sequence( number ) : trees.next( sequence_buffer );
+                char[] picture;
+                int picture_length;
+
+                if( Stats.enabled )
+                {
+                    mark = Stats.lap( Stats.ENUMERATE, mark );
+                }
+
+                if( shape_cache != null )
+                {
+                    shape_cache.render( sequence, false );
+                    picture = shape_cache.canvas();
+                    picture_length = shape_cache.length();
+                }
+                else
+                {
+                    int_tree.build( sequence );
+                    mark = Stats.enabled ? System.nanoTime() : 0;
+
+                    TreeCanvas canvas = int_tree.render( false );
+                    picture = canvas.canvas();
+                    picture_length = canvas.length();
+                }
+
+                if( Stats.enabled )
+                {
+                    mark = Stats.lap( Stats.RENDER, mark );
+                }
+
+                write_tree( sink, number, sequence, picture, picture_length );
+
+                if( options.flush_each )
+                {
+                    sink.flush();
+                }
+
+                if( Stats.enabled )
+                {
+                    Stats.lap( Stats.WRITE, mark );
+                }
+            }
+
+            if( !options.ranged() && trees.complete() )
+            {
+                sink.printf( "Binary search tree count = %,d\n", end_number - first_number );
             }
-            else
+
+            if( Stats.enabled )
             {
-                System.out.print( "Empty tree" );
+                Stats.record_trees( end_number - first_number, sink.bytes_written() );
             }
         }
-    }
-
-    public static Integer[] int_to_integer_arrays( int[] input_array )
-    {
-        Integer[] return_array = new Integer[input_array.length];
-
-        for( int index = 0; index < input_array.length; ++index )
+        catch( IllegalStateException exception )
         {
-            return_array[index] = Integer.valueOf( input_array[index] );
+            sink.flush();
+            System.out.printf( "Decode Error: %s\n", exception.getMessage() );
+            System.exit(1);
+        }
+        finally
+        {
+            sink.close();
+            trees.close();
         }
-
-        return return_array;
     }
 
 
     /**
-     * This method recursively returns the number of ways a binary
-     *  tree of input_count size can be constructed.
-     * @param - int.
-     * @return - int.
-     * @post - a (probably large) integer is allocated and calculated.
+     * This method prints how the binary trees of the values 1 to
+     *  input_size spread over their heights, roots, leaf counts and
+     *  widths, the way TreeDistribution counts them, instead of the
+     *  trees. It counts sizes far too large to print.
+     * @param - int, Options.
+     * @return - none.
+     * @post - 
+     *  This method does not change any of the rest of the program.
      **/
-    public static int permutate_count( int input_count )
+    public static void print_distribution( int input_size, Options options )
     {
-        //p(3) == p(0)*p(2) + p(1)*p(1) + p(2)*p(0) == 2+1+2 == 5
-        //p(4) == p(0)*p(3) + p(1)*p(2) + p(2)*p(1) + p(3)*p(0) == 5+2+2+5 == 14
-
-        if( input_count > 1 )
+        if( input_size < 1 )
         {
-            int return_count = 0;
+            System.out.printf( "Input Error: --distribution needs a positive integer\n" );
+            return;
+        }
 
-            for( int iteration = 0; iteration < input_count; ++iteration )
-            {
-                return_count += permutate_count( iteration ) * permutate_count( input_count - iteration - 1 );
-            }
+        OutputSink sink = options.open_sink();
 
-            return return_count;
+        try
+        {
+            TreeDistribution.print( input_size, options.samples, sink );
         }
-        else
+        finally
         {
-            return 1;
+            sink.close();
         }
     }
 
 
     /**
-     * This method recursively returns every possible array the input_array
-     *  can be arranged to construct a binary tree.
-     * @param - int array.
-     * @return - two dimentional int array.
-     * @post - a (probably lengthly) array is alocated an populated.
+     * This method prints every binary tree of the values 1 to input_size
+     *  to sink in rotation order, the order of RotationEnumerator rather
+     *  than of permutate(), numbering them in that order. One tree is
+     *  changed by a rotation to get the next, and only the nodes above the
+     *  rotation are laid out again.
+     * @param - int, Options, OutputSink.
+     * @return - none.
+     * @post - 
+     *  This method does not change any of the rest of the program.
      **/
-    public static Integer[][] permutate( Integer[] input_array )
+    private static void print_trees_rotating( int input_size, Options options, OutputSink sink )
     {
-        if( input_array.length > 1 )
-        {
-            Integer[][] permutations = new Integer[ permutate_count( input_array.length ) ][ input_array.length ];
-            int master_index = 0;
+        RotationEnumerator rotations = new RotationEnumerator( input_size );
+        int[] sequence = new int[ input_size ];
+        long number = 0;
 
-            for( int index = 0; index < input_array.length; ++index )
-            {
-                Integer[] subleft = new Integer[ index ];
-                Integer[] subright = new Integer[ input_array.length - index - 1 ];
+        do
+        { // the rotation lays out its own path, which Stats times as layout
+            long mark = Stats.enabled ? System.nanoTime() : 0;
 
-                int left_index = 0;
-                int right_index = 0;
+            rotations.sequence( sequence );
 
-                for( Integer array_element: input_array )
-                {
-                    if( array_element < input_array[ index ] )
-                    {
-                        subleft[ left_index++ ] = array_element;
-                    }
+            if( Stats.enabled )
+            {
+                mark = Stats.lap( Stats.ENUMERATE, mark );
+            }
 
-                    if( array_element > input_array[ index ] )
-                    {
-                        subright[ right_index++ ] = array_element;
-                    }
-                }
+            TreeCanvas canvas = rotations.render( false );
 
-                for( Integer[] permutated_left: permutate( subleft ) )
-                {
-                    for( Integer[] permutated_right: permutate( subright ) )
-                    {
-                        permutations[ master_index ][0] = input_array[ index ];
-                        System.arraycopy(permutated_left, 0, permutations[ master_index ], 1, permutated_left.length);
-                        System.arraycopy(permutated_right, 0, permutations[ master_index ], 1 + permutated_left.length, permutated_right.length);
+            if( Stats.enabled )
+            {
+                mark = Stats.lap( Stats.RENDER, mark );
+            }
 
-                        ++master_index;
-                    }
-                }
+            write_tree( sink, ++number, sequence, canvas.canvas(), canvas.length() );
+
+            if( options.flush_each )
+            {
+                sink.flush();
             }
 
-            return permutations;
-        }
-        else
-        {
-            return new Integer[][] {input_array};
+            if( Stats.enabled )
+            {
+                Stats.lap( Stats.WRITE, mark );
+            }
         }
+        while( rotations.advance() );
     }
 
 
     /**
-     * This method constructs an array with the values 1 to input_size
-     *  and prints all the binary trees that could be made from any
-     *  arrangement of that array.
-     * Arguments above a certain value will not be printed as a tree,
-     *  instead will be printed as a sequence of numbers.
-     * @param - int.
+     * This method writes the binary tree file of the trees of the values
+     *  1 to input_size numbered first_number up to but not including
+     *  end_number (counting from zero) among the trees that pass filter,
+     *  or among all of them when it is null, to sink: the header, then
+     *  the record of each tree. Nothing is laid out or rendered.
+     * @param - int, long, long, TreeFilter, Options, OutputSink.
      * @return - none.
      * @post - 
      *  This method does not change any of the rest of the program.
      **/
-    public static void print_all_trees( int input_size )
+    private static void write_binary_trees( int input_size, long first_number, long end_number, TreeFilter filter,
+        Options options, OutputSink sink )
     {
-        if( input_size > 19 )
-        {
-            System.out.printf( "Input Error: %d will cause an interger over flow\n", input_size );
-            return;
-        }
+        SequenceIterator enumerator = tree_enumerator( input_size, first_number, filter );
+        byte[] record = new byte[ BinaryTreeFile.record_size( input_size ) ];
+        int[] sequence = new int[ input_size ];
 
-        if( input_size > 15 )
-        {
-            System.out.printf( "Binary search tree count = %,d\n", permutate_count( input_size ) );
-            System.out.printf( "Input Warning: %d will likely cause an \"out of memory\" error\n", input_size );
-        }
+        BinaryTreeFile.write_header( sink, input_size, first_number + 1, end_number + 1 );
 
-        if( input_size > 0 )
+        for( long number = first_number; number < end_number; ++number )
         {
-            Integer[] array_set = new Integer[ input_size ];
+            long mark = Stats.enabled ? System.nanoTime() : 0;
+
+            enumerator.next( sequence );
 
-            for( int value = 0; value < input_size; )
+            if( Stats.enabled )
             {
-                array_set[ value ] = ++value;
+                mark = Stats.lap( Stats.ENUMERATE, mark );
             }
 
-            int BTScount = 0;
+            BinaryTreeFile.encode( sequence, record );
+            sink.write( record, 0, record.length );
 
-            for( Integer[] sequence: permutate( array_set ) )
+            if( options.flush_each )
             {
-                System.out.printf( "Tree number %,d: ", ++BTScount );
-                print_this_tree( sequence );
+                sink.flush();
             }
 
-            System.out.printf( "Binary search tree count = %,d\n", BTScount );
+            if( Stats.enabled )
+            {
+                Stats.lap( Stats.WRITE, mark );
+            }
         }
-        else
+    }
+
+
+    /**
+     * This method renders the binary trees of the values 1 to input_size
+     *  numbered first_number up to but not including end_number (counting
+     *  from zero) on the options' threads and writes them in order,
+     *  through a RenderPipeline. The numbers count the trees that pass
+     *  filter when it is not null.
+     * @param - int, long, long, TreeFilter, Options, OutputSink.
+     * @return - none.
+     * @post - 
+     *  This method does not change any of the rest of the program.
+     **/
+    private static void print_trees_parallel( int input_size, long first_number, long end_number, TreeFilter filter,
+        Options options, OutputSink sink )
+    {
+        if( first_number < end_number )
         {
-            System.out.printf( "Input Error: %d is not an acceptible input.\n", input_size );
+            new RenderPipeline( input_size, first_number, end_number, filter, options ).run( sink );
+        }
+    }
+
+
+    /**
+     * This method writes one tree of an enumeration to sink, the same
+     *  way print_all_trees() prints it: the tree number, the sequence
+     *  and the first picture_length characters of picture.
+     * @param - OutputSink, long, int array, char array, int.
+     * @return - none.
+     * @post - the tree is buffered in sink.
+     **/
+    public static void write_tree( OutputSink sink, long tree_number, int[] sequence, char[] picture, int picture_length )
+    {
+        sink.write( "Tree number " ).write( tree_number, true ).write( ": {" );
+
+        for( int index = 0; index < sequence.length; ++index )
+        {
+            if( index > 0 )
+            {
+                sink.write( ", " );
+            }
+
+            sink.write( sequence[ index ], false );
         }
+
+        sink.write( "}\n" ).write( picture, 0, picture_length ).write( "\n\n" );
     }
 
 
@@ -844,6 +7440,56 @@ public class OrganizedTree
     }
 
 
+    /**
+     * This method renders an int array's contents the
+     *  same way as array_toString() on an Integer array.
+     * @param - int array.
+     * @return - String.
+     * @post - a string describing the input_array is constructed.
+     **/
+    public static String array_toString( int[] input_array )
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append( "{" );
+
+        if( input_array.length > 0 )
+        {
+            sb.append( input_array[ 0 ] );
+        }
+        else
+        {
+            sb.append( " " );
+        }
+
+        for( int index = 1; index < input_array.length; ++index )
+        {
+            sb.append( ", " ).append( input_array[ index ] );
+        }
+
+        sb.append( "}" );
+
+        return sb.toString();
+    }
+
+
+    /**
+     * This method constructs a binary tree using the input array
+     *  and renders the array and the tree the way print_this_tree()
+     *  prints them.
+     * @param - int array.
+     * @return - String.
+     * @post
+     *  This method does not change any of the rest of the program.
+     **/
+    public static <Type extends Comparable<Type>> String tree_toString( Type[] input_sequence )
+    {
+        Tree<Type> sequence_tree = new Tree<Type>( input_sequence );
+
+        return array_toString( input_sequence ) + "\n" + sequence_tree.toString() + "\n\n";
+    }
+
+
     /**
      * This method constructs and prints a
      *  binary tree using the input array.
@@ -860,15 +7506,185 @@ public class OrganizedTree
         //sequence_tree.debug_print(); // statement for debugging purposes
     }
 
+    /**
+     * This method constructs a binary tree using the input array
+     *  and writes it to sink the way print_this_tree() prints it, or
+     *  only the window of levels and offsets the options choose. The
+     *  picture is written a level at a time, so it is never held whole.
+     * @param - int array, Options, OutputSink.
+     * @return - none.
+     * @post
+     *  This method does not change any of the rest of the program.
+     **/
+    public static <Type extends Comparable<Type>> void print_this_tree( Type[] input_sequence, Options options,
+        OutputSink sink )
+    {
+        Tree<Type> sequence_tree = new Tree<Type>( input_sequence ); // times its own construction and layout
+
+        write_this_tree( sequence_tree, index -> input_sequence[ index ].toString(), options, sink );
+    }
+
+
+    /**
+     * This method writes the labels of the nodes of sequence_tree in
+     *  the order they were inserted, label( index ) for the index-th,
+     *  and then the tree, to sink the way print_this_tree() prints
+     *  them, or only the window of levels and offsets the options
+     *  choose. The picture is written a level at a time, so it is
+     *  never held whole.
+     * @param - Tree<Type>, IntFunction<String>, Options, OutputSink.
+     * @return - none.
+     * @post
+     *  This method does not change any of the rest of the program.
+     **/
+    private static <Type extends Comparable<Type>> void write_this_tree( Tree<Type> sequence_tree,
+        IntFunction<String> label, Options options, OutputSink sink )
+    {
+        long mark = Stats.enabled ? System.nanoTime() : 0;
+
+        sink.write( "{" ).write( sequence_tree.size() > 0 ? label.apply( 0 ) : " " );
+
+        for( int index = 1; index < sequence_tree.size(); ++index )
+        {
+            sink.write( ", " ).write( label.apply( index ) );
+        }
+
+        sink.write( "}\n" );
+        sequence_tree.write( sink, false, options.first_level, options.end_level, options.first_offset,
+            options.end_offset );
+        sink.write( "\n\n" );
+
+        if( Stats.enabled )
+        { // the levels are written as they are rendered, so the writes are timed as rendering
+            Stats.lap( Stats.RENDER, mark );
+            Stats.record_trees( 1, sink.bytes_written() );
+        }
+    }
+
+
+    /**
+     * This method reads the keys of a tree of strings from the file
+     *  or standard input the options name, one to a line, and writes
+     *  the tree to sink the way print_this_tree() writes the tree of
+     *  the same keys given as arguments. The keys are interned as they
+     *  are read, so only the distinct keys are kept as strings.
+     * @param - Options, OutputSink.
+     * @return - none.
+     * @post
+     *  This method does not change any of the rest of the program.
+     * @exception UncheckedIOException
+     *   Indicates the keys could not be read.
+     **/
+    public static void print_key_tree( Options options, OutputSink sink )
+    {
+        LabelDictionary<String> dictionary = new LabelDictionary<String>();
+        long mark = Stats.enabled ? System.nanoTime() : 0;
+        int[] ids;
+        int key_count;
+
+        try( KeyFile keys = new KeyFile( options.keys_path ) )
+        {
+            keys.read( dictionary );
+            ids = keys.ids();
+            key_count = keys.key_count();
+
+            if( Stats.enabled )
+            {
+                Stats.lap( Stats.READ, mark );
+                Stats.record_keys( key_count, keys.bytes_read() );
+            }
+        }
+
+        if( key_count == 0 )
+        {
+            System.out.printf( "Input Error: there are no keys in %s\n",
+                options.keys_path.equals( KeyFile.STANDARD_INPUT ) ? "standard input" : options.keys_path );
+            return;
+        }
+
+        Tree<String> key_tree = new Tree<String>( dictionary, ids, key_count ); // times its own construction and layout
+
+        write_this_tree( key_tree, index -> dictionary.label( ids[ index ] ), options, sink );
+    }
+
     public static void main( String[] args )
     {
-        if( args.length == 1 && args[0].chars().allMatch( Character::isDigit ) )
+        Options options;
+
+        try
+        {
+            options = Options.parse( args );
+        }
+        catch( IllegalArgumentException exception )
+        {
+            System.out.printf( "Input Error: %s\n", exception.getMessage() );
+            System.exit(1);
+            return;
+        }
+
+        args = options.arguments;
+        Stats.enabled = options.stats;
+        Stats.events = FlightRecorder.isInitialized();
+
+        long start = System.nanoTime();
+
+        if( options.keys_path != null )
+        {
+            OutputSink sink = options.open_sink();
+
+            try
+            {
+                print_key_tree( options, sink ); // tree of strings read from a file
+            }
+            catch( UncheckedIOException exception )
+            {
+                System.out.printf( "Read Error: %s\n", exception.getMessage() );
+                System.exit(1);
+            }
+            finally
+            {
+                sink.close();
+            }
+        }
+        else if( options.merge )
+        {
+            merge_shards( args, options );
+        }
+        else if( options.decode )
+        {
+            decode_trees( args, options );
+        }
+        else if( options.distribution )
+        {
+            if( args.length == 1 && args[0].chars().allMatch( Character::isDigit ) )
+            {
+                print_distribution( Integer.parseInt( args[0] ), options );
+            }
+            else
+            {
+                System.out.printf( "Input Error: --distribution counts the trees of an integer\n" );
+            }
+        }
+        else if( args.length == 1 && args[0].chars().allMatch( Character::isDigit ) )
+        {
+            print_all_trees( Integer.parseInt( args[0] ), options );
+        }
+        else if( options.binary )
         {
-            print_all_trees( Integer.parseInt( args[0] ) );
+            System.out.printf( "Input Error: --binary writes the trees of an integer\n" );
         }
         else if( args.length > 0 )
         {
-            print_this_tree( args ); // tree of strings
+            OutputSink sink = options.open_sink();
+
+            try
+            {
+                print_this_tree( args, options, sink ); // tree of strings
+            }
+            finally
+            {
+                sink.close();
+            }
         }
         else // default
         {
@@ -880,6 +7696,11 @@ public class OrganizedTree
             print_all_trees( 4 );
         }
 
+        if( options.stats )
+        {
+            Stats.report( System.nanoTime() - start );
+        }
+
         System.exit(0);
     }
 }
@@ -0,0 +1,960 @@
+// FILE:  OrganizedTreeBenchmark.java
+
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+* A benchmark harness for OrganizedTree in the manner of JMH: each
+*  benchmark is run for warm up iterations, then for measured iterations
+*  of at least ITERATION_MILLIS each, and the time and the bytes allocated
+*  by the benchmark thread per operation are reported (the bytes are what
+*  JMH's -prof gc reports as gc.alloc.rate.norm, including the few bytes
+*  of boxing a primitive result).
+*
+*  Usage: java OrganizedTreeBenchmark [--quick] [name filter ...]
+*   A benchmark runs when its name contains one of the filters, or
+*   always when there are none. --quick runs one short iteration of each,
+*   to check the benchmarks work rather than to time them.
+*
+*  Usage: java OrganizedTreeBenchmark --golden
+*   Writes the trees of 6, 7 and 8 in every execution mode and checks
+*   the output byte for byte against OrganizedTree6.txt, 7 and 8,
+*   reporting the wall time and the heap allocated by each mode. Then
+*   each check compares what the program counts without enumerating
+*   with the trees of every size up to CHECK_LIMIT enumerated one by
+*   one. The exit status is 1 when any output or check differs.
+*/
+public class OrganizedTreeBenchmark
+{
+    /** the shapes of the trees that are benchmarked */
+    enum Shape { BALANCED, DEGENERATE, RANDOM }
+
+    private static int warmup_iterations = 3, iterations = 5;
+    private static long iteration_millis = 500;
+
+    /** results are folded into this, so the work can not be optimized away */
+    private static volatile long blackhole;
+
+    /** the sizes with a reference output, OrganizedTree<size>.txt */
+    private static final int[] GOLDEN_SIZES = {6, 7, 8};
+
+    /** the number of shards the shard mode splits a size into */
+    private static final int GOLDEN_SHARDS = 3;
+
+    /** the largest size the checks enumerate every tree of */
+    private static final int CHECK_LIMIT = 9;
+
+    /** no child, in the links the checks build */
+    private static final int NONE = -1;
+
+    /** the bytes freed by the collections seen so far, and their count */
+    private static final AtomicLong collected_bytes = new AtomicLong(), collections_seen = new AtomicLong();
+
+
+    /**
+    * An execution mode that writes every tree of size to the file at path.
+    */
+    interface Mode
+    {
+        void write( int size, String path ) throws Exception;
+    }
+
+
+    /**
+    * A check of the trees of size that the program counts or numbers
+    *  without building them against the trees enumerated and measured
+    *  one by one, which returns null when they agree or what differs.
+    */
+    interface Check
+    {
+        String run( int size );
+    }
+
+
+    /**
+    * A single benchmark: a name, its parameters, and the
+    *  operation that is timed, which returns a value to consume.
+    */
+    static class Benchmark
+    {
+        private final String name, parameters;
+        private final IntFunction<Object> operation;
+
+        Benchmark( String input_name, String input_parameters, IntFunction<Object> input_operation )
+        {
+            name = input_name;
+            parameters = input_parameters;
+            operation = input_operation;
+        }
+    }
+
+
+    /**
+     * Runs the benchmarks the arguments choose and prints a table
+     *  of their results.
+     * @param - String array.
+     * @return - none.
+     * @post -
+     *  This method does not change any of the rest of the program.
+     * @exception Exception
+     *   Indicates a mode of --golden failed to write its output.
+     **/
+    public static void main( String[] args ) throws Exception
+    {
+        List<String> filters = new ArrayList<String>();
+
+        for( String argument: args )
+        {
+            if( argument.equals( "--golden" ) )
+            {
+                System.exit( golden() ? 0 : 1 );
+            }
+            else if( argument.equals( "--quick" ) )
+            {
+                warmup_iterations = 0;
+                iterations = 1;
+                iteration_millis = 1;
+            }
+            else
+            {
+                filters.add( argument );
+            }
+        }
+
+        System.out.printf( "%-28s %-22s %4s %14s %12s %16s\n", "Benchmark", "(shape, n)", "Cnt", "Score", "Error", "alloc B/op" );
+
+        for( Benchmark benchmark: benchmarks() )
+        {
+            if( filters.isEmpty() || filters.stream().anyMatch( filter -> benchmark.name.contains( filter ) ) )
+            {
+                run( benchmark );
+            }
+        }
+    }
+
+
+    /**
+     * Writes the trees of each golden size in every mode, compares the
+     *  output with the reference file and prints a row for each run.
+     *  OrganizedTree8.txt was saved before tree numbers were grouped by
+     *  thousands, so an output that only differs from a reference file
+     *  by the separators in its tree numbers and count is reported as
+     *  matching with ungrouped numbers. The allocation is counted from
+     *  the heap in use, so it is only as fine as the collector's
+     *  allocation buffers, about a megabyte.
+     * @param - none.
+     * @return - boolean, whether every output matched.
+     * @post - the temporary output files are deleted.
+     * @exception Exception
+     *   Indicates a mode failed to write its output.
+     **/
+    private static boolean golden() throws Exception
+    {
+        String[] names = {"sequential", "shape cache", "parallel", "parallel, shape cache", "flush each tree",
+            "shards, merged", "binary, decoded", "Tree<Integer>", "rotations, sorted", "standard output"};
+        Mode[] modes = {
+            ( size, path ) -> print( size, path, 1, 0, false ),
+            ( size, path ) -> print( size, path, 1, OrganizedTree.ShapeCache.DEFAULT_ENTRIES, false ),
+            ( size, path ) -> print( size, path, 4, 0, false ),
+            ( size, path ) -> print( size, path, 4, OrganizedTree.ShapeCache.DEFAULT_ENTRIES, false ),
+            ( size, path ) -> print( size, path, 1, OrganizedTree.ShapeCache.DEFAULT_ENTRIES, true ),
+            OrganizedTreeBenchmark::print_shards,
+            OrganizedTreeBenchmark::print_binary,
+            OrganizedTreeBenchmark::print_generic,
+            OrganizedTreeBenchmark::print_rotations,
+            OrganizedTreeBenchmark::print_process
+        };
+        String[] check_names = {"filters", "distribution"};
+        Check[] checks = {
+            OrganizedTreeBenchmark::check_filters,
+            OrganizedTreeBenchmark::check_distribution
+        };
+        boolean all_match = true;
+        File output = File.createTempFile( "OrganizedTree", ".txt" );
+
+        watch_collections();
+        System.out.printf( "%-4s %-22s %-44s %10s %14s\n", "n", "Mode", "Result", "Time ms", "Allocated KB" );
+
+        try
+        {
+            for( int size: GOLDEN_SIZES )
+            {
+                byte[] expected = Files.readAllBytes( Paths.get( "OrganizedTree" + size + ".txt" ) );
+
+                for( int mode = 0; mode < modes.length; ++mode )
+                {
+                    long allocated_before = allocated_bytes();
+                    long start = System.nanoTime();
+
+                    modes[ mode ].write( size, output.getPath() );
+
+                    long elapsed = System.nanoTime() - start;
+                    long allocated = allocated_bytes() - allocated_before;
+                    String result = compare( Files.readAllBytes( output.toPath() ), expected );
+
+                    all_match &= !result.startsWith( "DIFF" );
+                    System.out.printf( "%-4d %-22s %-44s %10.1f %14s\n", size, names[ mode ], result, elapsed / 1e6,
+                        mode == modes.length - 1 ? "(other JVM)" : String.format( "%,d", allocated / 1024 ) );
+                }
+            }
+
+            for( int check = 0; check < checks.length; ++check )
+            {
+                long allocated_before = allocated_bytes();
+                long start = System.nanoTime();
+                String result = "match";
+
+                for( int size = 1; size <= CHECK_LIMIT && result.equals( "match" ); ++size )
+                {
+                    String difference;
+
+                    try
+                    {
+                        difference = checks[ check ].run( size );
+                    }
+                    catch( RuntimeException exception )
+                    { // a broken count can also index out of its tables
+                        difference = exception.toString();
+                    }
+
+                    result = difference == null ? "match" : "DIFF n=" + size + ", " + difference;
+                }
+
+                long elapsed = System.nanoTime() - start;
+                long allocated = allocated_bytes() - allocated_before;
+
+                all_match &= !result.startsWith( "DIFF" );
+                System.out.printf( "%-4s %-22s %-44s %10.1f %14s\n", "1-" + CHECK_LIMIT, check_names[ check ], result,
+                    elapsed / 1e6, String.format( "%,d", allocated / 1024 ) );
+            }
+        }
+        finally
+        {
+            output.delete();
+        }
+
+        System.out.println( all_match ? "All outputs match." : "Some outputs differ." );
+
+        return all_match;
+    }
+
+
+    /**
+     * Returns how output compares with expected: "match" when they are
+     *  the same bytes, "match, tree numbers ungrouped" when they are the
+     *  same once the thousands separators of the tree numbers and the
+     *  count are removed, and otherwise "DIFF at line" and the first line that
+     *  differs.
+     * @param - byte array, byte array.
+     * @return - String.
+     * @post - the arrays are unchanged.
+     **/
+    private static String compare( byte[] output, byte[] expected )
+    {
+        if( Arrays.equals( output, expected ) )
+        {
+            return "match";
+        }
+
+        String[] output_lines = ungroup( new String( output, StandardCharsets.ISO_8859_1 ) ).split( "\n", -1 );
+        String[] expected_lines = ungroup( new String( expected, StandardCharsets.ISO_8859_1 ) ).split( "\n", -1 );
+
+        for( int line = 0; line < Math.max( output_lines.length, expected_lines.length ); ++line )
+        {
+            if( line >= output_lines.length || line >= expected_lines.length ||
+                !output_lines[ line ].equals( expected_lines[ line ] ) )
+            {
+                return String.format( "DIFF at line %,d", line + 1 );
+            }
+        }
+
+        return "match, tree numbers ungrouped";
+    }
+
+    private static String ungroup( String text )
+    {
+        Matcher matcher = Pattern.compile( "(?m)^(Tree number|Binary search tree count =) [0-9,]+" ).matcher( text );
+        StringBuffer ungrouped = new StringBuffer();
+
+        while( matcher.find() )
+        {
+            matcher.appendReplacement( ungrouped, matcher.group().replace( ",", "" ) );
+        }
+
+        return matcher.appendTail( ungrouped ).toString();
+    }
+
+
+    /**
+     * Prints the trees of size to path with print_all_trees.
+     * @param - int, String, int, int, boolean.
+     * @return - none.
+     * @post - the file at path holds the trees.
+     **/
+    private static void print( int size, String path, int threads, int cache_entries, boolean flush_each )
+    {
+        OrganizedTree.Options options = new OrganizedTree.Options();
+
+        options.output_path = path;
+        options.threads = threads;
+        options.cache_entries = cache_entries;
+        options.flush_each = flush_each;
+        OrganizedTree.print_all_trees( size, options );
+    }
+
+
+    /**
+     * Prints the trees of size to path as GOLDEN_SHARDS shard files
+     *  joined by merge_shards.
+     * @param - int, String.
+     * @return - none.
+     * @post - the file at path holds the trees, the shard files are deleted.
+     **/
+    private static void print_shards( int size, String path )
+    {
+        String[] shard_paths = new String[ GOLDEN_SHARDS ];
+
+        for( int shard = 0; shard < GOLDEN_SHARDS; ++shard )
+        {
+            OrganizedTree.Options options = new OrganizedTree.Options();
+
+            shard_paths[ shard ] = path + "." + ( shard + 1 );
+            options.output_path = shard_paths[ shard ];
+            options.shard_index = shard + 1;
+            options.shard_count = GOLDEN_SHARDS;
+            OrganizedTree.print_all_trees( size, options );
+        }
+
+        OrganizedTree.Options options = new OrganizedTree.Options();
+
+        options.output_path = path;
+        OrganizedTree.merge_shards( shard_paths, options );
+
+        for( String shard_path: shard_paths )
+        {
+            new File( shard_path ).delete();
+        }
+    }
+
+
+    /**
+     * Writes the trees of size as a binary tree file, then prints them
+     *  to path with decode_trees.
+     * @param - int, String.
+     * @return - none.
+     * @post - the file at path holds the trees, the binary file is deleted.
+     **/
+    private static void print_binary( int size, String path )
+    {
+        OrganizedTree.Options options = new OrganizedTree.Options();
+
+        options.output_path = path + ".bin";
+        options.binary = true;
+        OrganizedTree.print_all_trees( size, options );
+        options = new OrganizedTree.Options();
+        options.output_path = path;
+        OrganizedTree.decode_trees( new String[] {path + ".bin"}, options );
+        new File( path + ".bin" ).delete();
+    }
+
+
+    /**
+     * Prints the trees of size to path the way print_all_trees does,
+     *  but builds and renders each one as a Tree<Integer>.
+     * @param - int, String.
+     * @return - none.
+     * @post - the file at path holds the trees.
+     **/
+    private static void print_generic( int size, String path )
+    {
+        OrganizedTree.OutputSink sink = OrganizedTree.OutputSink.file( path );
+        long number = 0;
+
+        try
+        {
+            for( int[] sequence: OrganizedTree.permutations( size ) )
+            {
+                Integer[] values = Arrays.stream( sequence ).boxed().toArray( Integer[]::new );
+                OrganizedTree.TreeCanvas canvas = new OrganizedTree.Tree<Integer>( values ).render( false );
+
+                OrganizedTree.write_tree( sink, ++number, sequence, canvas.canvas(), canvas.length() );
+            }
+
+            sink.printf( "Binary search tree count = %,d\n", number );
+        }
+        finally
+        {
+            sink.close();
+        }
+    }
+
+
+    /**
+     * Prints the trees of size to path in rotation order, then sorts the
+     *  records into tree number order by rank() and numbers them again,
+     *  so the file matches the sequential output exactly when the
+     *  rotations reach every tree once and draw it the same.
+     * @param - int, String.
+     * @return - none.
+     * @post - the file at path holds the trees in tree number order.
+     **/
+    private static void print_rotations( int size, String path ) throws Exception
+    {
+        OrganizedTree.Options options = new OrganizedTree.Options();
+
+        options.output_path = path;
+        options.rotations = true;
+        OrganizedTree.print_all_trees( size, options );
+
+        String text = new String( Files.readAllBytes( Paths.get( path ) ), StandardCharsets.ISO_8859_1 );
+        int count_start = text.lastIndexOf( "Binary search tree count" );
+        List<String> records = new ArrayList<String>( Arrays.asList(
+            text.substring( 0, count_start ).split( "(?m)^Tree number [0-9,]+: " ) ) );
+        StringBuilder sorted = new StringBuilder();
+
+        records.remove( 0 ); // the empty text before the first record
+        records.sort( ( first, second ) -> Long.compare( OrganizedTree.rank( record_sequence( first ) ),
+            OrganizedTree.rank( record_sequence( second ) ) ) );
+
+        for( int number = 0; number < records.size(); ++number )
+        {
+            sorted.append( String.format( "Tree number %,d: ", number + 1 ) ).append( records.get( number ) );
+        }
+
+        sorted.append( text.substring( count_start ) );
+        Files.write( Paths.get( path ), sorted.toString().getBytes( StandardCharsets.ISO_8859_1 ) );
+    }
+
+    private static int[] record_sequence( String record )
+    {
+        return Arrays.stream( record.substring( 1, record.indexOf( '}' ) ).split( ", " ) ).mapToInt( Integer::parseInt ).toArray();
+    }
+
+
+    /**
+     * Prints the trees of size to path by running the program in
+     *  another JVM, with its standard output sent to the file.
+     * @param - int, String.
+     * @return - none.
+     * @post - the file at path holds the trees.
+     * @exception IllegalStateException
+     *   Indicates the program did not exit normally.
+     **/
+    private static void print_process( int size, String path ) throws Exception
+    {
+        String java = Paths.get( System.getProperty( "java.home" ), "bin", "java" ).toString();
+        Process process = new ProcessBuilder( java, "-cp", System.getProperty( "java.class.path" ), "OrganizedTree",
+            Integer.toString( size ) ).redirectOutput( new File( path ) ).redirectErrorStream( false ).start();
+
+        if( process.waitFor() != 0 )
+        {
+            throw new IllegalStateException( "OrganizedTree " + size + " exited with " + process.exitValue() );
+        }
+    }
+
+
+    /**
+     * Checks TreeFilter for every height limit, with and without AVL
+     *  balance and for every root: its count, and the trees its iterator
+     *  numbers, against the trees of TreeEnumerator that pass, found by
+     *  inserting each sequence and measuring the tree.
+     * @param - int.
+     * @return - String, null when every filter agrees.
+     * @post - class values are unchanged.
+     **/
+    private static String check_filters( int size )
+    {
+        List<int[]> trees = new ArrayList<int[]>();
+        int[] left = new int[ size ], right = new int[ size ];
+
+        for( OrganizedTree.TreeEnumerator enumerator = new OrganizedTree.TreeEnumerator( size ); enumerator.hasNext(); )
+        {
+            trees.add( enumerator.next() );
+        }
+
+        int[] heights = new int[ trees.size() ];
+        boolean[] balanced = new boolean[ trees.size() ];
+
+        for( int tree = 0; tree < trees.size(); ++tree )
+        {
+            int root = link( trees.get( tree ), left, right );
+
+            heights[ tree ] = height( root, left, right );
+            balanced[ tree ] = balanced( root, left, right );
+        }
+
+        for( int max_height = 0; max_height <= size; ++max_height )
+        {
+            for( boolean avl: new boolean[] {false, true} )
+            {
+                for( int root = 0; root <= size; ++root )
+                {
+                    OrganizedTree.TreeFilter filter = new OrganizedTree.TreeFilter( size, max_height, avl, root );
+                    Iterator<int[]> numbered = filter.iterator( 0 );
+                    long passed = 0;
+
+                    for( int tree = 0; tree < trees.size(); ++tree )
+                    {
+                        if( ( max_height == 0 || heights[ tree ] <= max_height ) && ( !avl || balanced[ tree ] ) &&
+                            ( root == 0 || trees.get( tree )[0] == root ) )
+                        {
+                            ++passed;
+
+                            if( !numbered.hasNext() || !Arrays.equals( numbered.next(), trees.get( tree ) ) )
+                            {
+                                return "tree " + passed + " of the trees" + filter;
+                            }
+                        }
+                    }
+
+                    if( numbered.hasNext() || filter.count() != passed )
+                    {
+                        return filter.count() + " trees" + filter + ", not " + passed;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Checks the tables of TreeDistribution, the trees by height, root,
+     *  leaf count and offset span, against the trees of TreeEnumerator
+     *  each measured and laid out by ContourLayout.
+     * @param - int.
+     * @return - String, null when every table agrees.
+     * @post - class values are unchanged.
+     **/
+    private static String check_distribution( int size )
+    {
+        long[] heights = new long[ size + 1 ], roots = new long[ size + 1 ], leaves = new long[ size + 1 ];
+        long[] spans = new long[ 2 * size + 2 ];
+        int[] left = new int[ size ], right = new int[ size ], offset = new int[ size ];
+        OrganizedTree.ContourLayout layout = new OrganizedTree.ContourLayout( size );
+
+        for( OrganizedTree.TreeEnumerator enumerator = new OrganizedTree.TreeEnumerator( size ); enumerator.hasNext(); )
+        {
+            int[] sequence = enumerator.next();
+            int root = link( sequence, left, right );
+            int leaf_count = 0;
+
+            for( int node = 0; node < size; ++node )
+            {
+                leaf_count += left[ node ] == NONE && right[ node ] == NONE ? 1 : 0;
+            }
+
+            layout.layout( root, size, left, right, offset );
+            ++heights[ height( root, left, right ) ];
+            ++roots[ sequence[0] ];
+            ++leaves[ leaf_count ];
+            ++spans[ Arrays.stream( offset ).max().getAsInt() ]; // the least offset is 1
+        }
+
+        String[] names = {"heights", "roots", "leaves", "spans"};
+        long[][] counted = {to_long( OrganizedTree.TreeDistribution.heights( size ) ),
+            to_long( OrganizedTree.TreeDistribution.roots( size ) ), to_long( OrganizedTree.TreeDistribution.leaves( size ) ),
+            OrganizedTree.TreeDistribution.spans( size )};
+        long[][] enumerated = {heights, roots, leaves, spans};
+
+        for( int table = 0; table < names.length; ++table )
+        {
+            if( !Arrays.equals( counted[ table ], enumerated[ table ] ) )
+            {
+                return names[ table ] + " " + Arrays.toString( counted[ table ] );
+            }
+        }
+
+        return null;
+    }
+
+    private static long[] to_long( BigInteger[] counts )
+    {
+        return Arrays.stream( counts ).mapToLong( BigInteger::longValueExact ).toArray();
+    }
+
+
+    /**
+     * Fills left and right with the links of the tree that inserting
+     *  sequence builds, node value - 1 for each value.
+     * @param - int array, int array, int array.
+     * @return - int, the root node.
+     * @post - the links are overwritten.
+     **/
+    private static int link( int[] sequence, int[] left, int[] right )
+    {
+        Arrays.fill( left, NONE );
+        Arrays.fill( right, NONE );
+
+        for( int index = 1; index < sequence.length; ++index )
+        {
+            int node = sequence[0] - 1, added = sequence[ index ] - 1;
+
+            while( true )
+            {
+                int[] side = added < node ? left : right;
+
+                if( side[ node ] == NONE )
+                {
+                    side[ node ] = added;
+                    break;
+                }
+
+                node = side[ node ];
+            }
+        }
+
+        return sequence[0] - 1;
+    }
+
+    private static int height( int node, int[] left, int[] right )
+    {
+        return node == NONE ? 0 : 1 + Math.max( height( left[ node ], left, right ), height( right[ node ], left, right ) );
+    }
+
+    private static boolean balanced( int node, int[] left, int[] right )
+    {
+        return node == NONE || ( Math.abs( height( left[ node ], left, right ) - height( right[ node ], left, right ) ) <= 1 &&
+            balanced( left[ node ], left, right ) && balanced( right[ node ], left, right ) );
+    }
+
+
+    /**
+     * Starts counting the bytes each garbage collection frees, so
+     *  allocated_bytes() can count what every thread allocated.
+     * @param - none.
+     * @return - none.
+     * @post - a listener is added to each collector.
+     **/
+    private static void watch_collections()
+    {
+        for( GarbageCollectorMXBean collector: ManagementFactory.getGarbageCollectorMXBeans() )
+        {
+            ( (NotificationEmitter) collector ).addNotificationListener( ( notification, handback ) -> {
+                if( notification.getType().equals( GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION ) )
+                {
+                    GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from( (CompositeData) notification.getUserData() );
+
+                    collected_bytes.addAndGet( used( info.getGcInfo().getMemoryUsageBeforeGc().values() ) -
+                        used( info.getGcInfo().getMemoryUsageAfterGc().values() ) );
+                    collections_seen.incrementAndGet();
+                }
+            }, null, null );
+        }
+    }
+
+
+    /**
+     * Returns the bytes allocated on the heap since watch_collections()
+     *  was called, less the heap in use then: the bytes freed by the
+     *  collections since plus the heap in use now. It waits for the
+     *  notices of the collections that have run to arrive.
+     * @param - none.
+     * @return - long.
+     * @post - class values are unchanged.
+     **/
+    private static long allocated_bytes() throws InterruptedException
+    {
+        long collections = 0;
+
+        for( GarbageCollectorMXBean collector: ManagementFactory.getGarbageCollectorMXBeans() )
+        {
+            collections += collector.getCollectionCount();
+        }
+
+        for( int wait = 0; wait < 100 && collections_seen.get() < collections; ++wait )
+        {
+            Thread.sleep( 10 );
+        }
+
+        return collected_bytes.get() + ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long used( Collection<MemoryUsage> usages )
+    {
+        long used = 0;
+
+        for( MemoryUsage usage: usages )
+        {
+            used += usage.getUsed();
+        }
+
+        return used;
+    }
+
+
+    /**
+     * Returns every benchmark. The enumeration benchmarks grow
+     *  exponentially, so they stop at small sizes, and a degenerate
+     *  tree's picture grows with the square of its size, so it is
+     *  rendered up to 2,000 nodes only.
+     * @param - none.
+     * @return - List of Benchmark.
+     * @post - the trees the benchmarks use are built.
+     **/
+    private static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        int[] tree_sizes = {6, 100, 10_000, 100_000};
+
+        for( int size: new int[] {6, 8, 10} )
+        {
+            Integer[] values = sequence( Shape.DEGENERATE, size );
+
+            benchmarks.add( new Benchmark( "permutate", "n=" + size, index -> OrganizedTree.permutate( values ) ) );
+        }
+
+        for( int size: new int[] {6, 10, 12} )
+        {
+            benchmarks.add( new Benchmark( "permutations", "n=" + size, index -> {
+                long sum = 0;
+
+                for( int[] sequence: OrganizedTree.permutations( size ) )
+                {
+                    sum += sequence[0];
+                }
+
+                return sum;
+            } ) );
+        }
+
+        for( int size: new int[] {6, 20, 35} )
+        {
+            benchmarks.add( new Benchmark( "permutate_count", "n=" + size, index -> OrganizedTree.permutate_count( size ) ) );
+        }
+
+        for( int size: new int[] {8, 12} )
+        {
+            for( boolean cached: new boolean[] {true, false} )
+            {
+                benchmarks.add( new Benchmark( "print_all_trees, per tree", "n=" + size + ( cached ? ", cache" : "" ),
+                    enumeration_step( size, cached ) ) );
+            }
+        }
+
+        for( Shape shape: Shape.values() )
+        {
+            for( int size: tree_sizes )
+            {
+                Integer[] values = sequence( shape, size );
+                String parameters = shape.name().toLowerCase() + ", n=" + size;
+
+                benchmarks.add( new Benchmark( "Tree(Type[])", parameters, index -> new OrganizedTree.Tree<Integer>( values ) ) );
+            }
+        }
+
+        for( Shape shape: Shape.values() )
+        {
+            for( int size: tree_sizes )
+            {
+                OrganizedTree.Node<Integer> root = new OrganizedTree.Tree<Integer>( sequence( shape, size ) ).getRoot();
+                String parameters = shape.name().toLowerCase() + ", n=" + size;
+
+                benchmarks.add( new Benchmark( "Node.configureOffset", parameters, index -> {
+                    root.configureOffset();
+                    return root.getOffset();
+                } ) );
+            }
+        }
+
+        for( Shape shape: Shape.values() )
+        {
+            for( int size: shape == Shape.DEGENERATE ? new int[] {6, 100, 2_000} : tree_sizes )
+            {
+                OrganizedTree.Tree<Integer> tree = new OrganizedTree.Tree<Integer>( sequence( shape, size ) );
+
+                for( boolean wide_link: new boolean[] {false, true} )
+                {
+                    String parameters = shape.name().toLowerCase() + ", n=" + size + ( wide_link ? ", wide" : "" );
+
+                    benchmarks.add( new Benchmark( "Tree.toString(boolean)", parameters, index -> tree.toString( wide_link ) ) );
+                }
+            }
+        }
+
+        return benchmarks;
+    }
+
+
+    /**
+     * Returns an operation that does what one pass of the loop of
+     *  print_all_trees() does: it enumerates the next tree of size,
+     *  starting over after the last, renders it with or without a shape
+     *  cache and writes it to a sink that discards its output. Every
+     *  object the loop uses is made once, so once the cache is full an
+     *  operation should allocate nothing.
+     * @param - int, boolean.
+     * @return - IntFunction.
+     * @post - the enumerator, tree, cache and sink are allocated.
+     **/
+    private static IntFunction<Object> enumeration_step( int size, boolean cached )
+    {
+        OrganizedTree.TreeEnumerator[] enumerator = { new OrganizedTree.TreeEnumerator( size ) };
+        OrganizedTree.IntTree int_tree = new OrganizedTree.IntTree( size );
+        OrganizedTree.ShapeCache shape_cache = cached ? new OrganizedTree.ShapeCache( OrganizedTree.ShapeCache.DEFAULT_ENTRIES ) :
+            null;
+        OrganizedTree.OutputSink sink = new OrganizedTree.OutputSink( Channels.newChannel( OutputStream.nullOutputStream() ),
+            false, OrganizedTree.OutputSink.DEFAULT_BUFFER_SIZE );
+        int[] sequence = new int[ size ];
+
+        return index -> {
+            if( !enumerator[0].hasNext() )
+            {
+                enumerator[0] = new OrganizedTree.TreeEnumerator( size );
+            }
+
+            enumerator[0].next( sequence );
+
+            if( shape_cache != null )
+            {
+                shape_cache.render( sequence, false );
+                OrganizedTree.write_tree( sink, index + 1, sequence, shape_cache.canvas(), shape_cache.length() );
+            }
+            else
+            {
+                int_tree.build( sequence );
+
+                OrganizedTree.TreeCanvas canvas = int_tree.render( false );
+                OrganizedTree.write_tree( sink, index + 1, sequence, canvas.canvas(), canvas.length() );
+            }
+
+            return sink;
+        };
+    }
+
+
+    /**
+     * Returns the insertion order of the values 1 to size that builds
+     *  a tree of the given shape: each middle value before the halves
+     *  for a balanced tree, ascending for a degenerate one, and a
+     *  shuffle with a fixed seed for a random one.
+     * @param - Shape, int.
+     * @return - Integer array.
+     * @post - a new array is allocated.
+     **/
+    private static Integer[] sequence( Shape shape, int size )
+    {
+        Integer[] values = new Integer[ size ];
+
+        if( shape == Shape.BALANCED )
+        {
+            int[] ranges = new int[ 4 * size + 2 ]; // a queue of first, last pairs, two for each value and the first
+            int head = 0, tail = 0, count = 0;
+
+            ranges[ tail++ ] = 1;
+            ranges[ tail++ ] = size;
+
+            while( head < tail )
+            {
+                int first = ranges[ head++ ], last = ranges[ head++ ];
+
+                if( first <= last )
+                {
+                    int middle = ( first + last ) >>> 1;
+
+                    values[ count++ ] = middle;
+                    ranges[ tail++ ] = first;
+                    ranges[ tail++ ] = middle - 1;
+                    ranges[ tail++ ] = middle + 1;
+                    ranges[ tail++ ] = last;
+                }
+            }
+        }
+        else
+        {
+            for( int index = 0; index < size; ++index )
+            {
+                values[ index ] = index + 1;
+            }
+
+            if( shape == Shape.RANDOM )
+            {
+                Random random = new Random( 42 );
+
+                for( int index = size - 1; index > 0; --index )
+                {
+                    int other = random.nextInt( index + 1 );
+                    Integer swap = values[ index ];
+                    values[ index ] = values[ other ];
+                    values[ other ] = swap;
+                }
+            }
+        }
+
+        return values;
+    }
+
+
+    /**
+     * Runs one benchmark and prints its row: the mean time per operation
+     *  with the half range of the iterations as the error, and the bytes
+     *  allocated per operation.
+     * @param - Benchmark.
+     * @return - none.
+     * @post -
+     *  This method does not change any of the rest of the program.
+     **/
+    private static void run( Benchmark benchmark )
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread_id = Thread.currentThread().getId();
+        double[] nanos_per_operation = new double[ iterations ];
+        long allocated = 0, operations = 0;
+
+        for( int iteration = 0; iteration < warmup_iterations + iterations; ++iteration )
+        {
+            long allocated_before = threads.getThreadAllocatedBytes( thread_id );
+            long start = System.nanoTime();
+            long deadline = start + iteration_millis * 1_000_000;
+            long count = 0;
+
+            do
+            {
+                blackhole += System.identityHashCode( benchmark.operation.apply( (int) count ) );
+                ++count;
+            }
+            while( System.nanoTime() < deadline );
+
+            long elapsed = System.nanoTime() - start;
+
+            if( iteration >= warmup_iterations )
+            {
+                nanos_per_operation[ iteration - warmup_iterations ] = (double) elapsed / count;
+                allocated += threads.getThreadAllocatedBytes( thread_id ) - allocated_before;
+                operations += count;
+            }
+        }
+
+        double mean = Arrays.stream( nanos_per_operation ).average().orElse( 0 );
+        double error = ( Arrays.stream( nanos_per_operation ).max().orElse( 0 ) -
+            Arrays.stream( nanos_per_operation ).min().orElse( 0 ) ) / 2;
+        String unit = mean >= 1_000_000 ? "ms/op" : "us/op";
+        double scale = mean >= 1_000_000 ? 1_000_000 : 1_000;
+
+        System.out.printf( "%-28s %-22s %4d %8.3f %5s %12.3f %16d\n", benchmark.name, benchmark.parameters, iterations,
+            mean / scale, unit, error / scale, allocated / Math.max( 1, operations ) );
+    }
+}